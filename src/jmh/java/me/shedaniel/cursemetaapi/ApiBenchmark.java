@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.google.gson.JsonObject;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cpu paths of a request without the network: binding the recorded addon and file, building the
+ * search url, the date getters and reading a description with {@link CurseMetaAPI.InternetUtils#getStringFromStream}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ApiBenchmark {
+    String addonJson;
+    String fileJson;
+    CurseMetaClient client;
+    MetaSearch search;
+    Addon addon;
+    String dateModified;
+    
+    @Setup
+    public void setup() throws IOException {
+        try (Reader reader = new InputStreamReader(ApiBenchmark.class.getResourceAsStream("/addon.json"), StandardCharsets.UTF_8)) {
+            JsonObject json = CurseMetaAPI.GSON.fromJson(reader, JsonObject.class);
+            addonJson = json.toString();
+            fileJson = json.getAsJsonArray("latestFiles").get(0).toString();
+        }
+        client = CurseMetaClient.create();
+        search = MetaSearch.create(432).setSectionId(6).setGameVersion("1.14.4").setSearchFilter("just enough items").setPageSize(50);
+        addon = CurseMetaAPI.GSON.fromJson(addonJson, Addon.class);
+        dateModified = addon.dateModified;
+    }
+    
+    @Benchmark
+    public Addon bindAddon() {
+        return CurseMetaAPI.GSON.fromJson(addonJson, Addon.class);
+    }
+    
+    @Benchmark
+    public AddonFile bindAddonFile() {
+        return CurseMetaAPI.GSON.fromJson(fileJson, AddonFile.class);
+    }
+    
+    @Benchmark
+    public URL searchUrl() throws IOException {
+        return client.searchUrl(search);
+    }
+    
+    /**
+     * The date string is replaced by an equal copy, so it is parsed again.
+     */
+    @Benchmark
+    public long parseDateModified() throws ParseException {
+        addon.dateModified = new String(dateModified);
+        return addon.getDateModifiedMillis();
+    }
+    
+    @Benchmark
+    public long cachedDateModified() throws ParseException {
+        return addon.getDateModifiedMillis();
+    }
+    
+    @Benchmark
+    public String getStringFromStream(Description description) throws IOException {
+        return CurseMetaAPI.InternetUtils.getStringFromStream(new ByteArrayInputStream(description.bytes));
+    }
+    
+    @State(Scope.Benchmark)
+    public static class Description {
+        @Param({"1024", "65536"})
+        int size;
+        byte[] bytes;
+        
+        @Setup
+        public void setup() {
+            StringBuilder html = new StringBuilder();
+            while (html.length() < size)
+                html.append("<p>Just Enough Items is an item and recipe viewing mod for Minecraft.</p>\n");
+            bytes = html.substring(0, size).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap held by 10k addons bound with {@link CurseMetaAPI#GSON} and with {@link LeanBinding#GSON},
+ * the retained heap of every iteration is printed after the iteration.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class BindingMemoryBenchmark {
+    static final int ADDONS = 10_000;
+    
+    @Param({"full", "lean"})
+    String binding;
+    String json;
+    Gson gson;
+    long retained;
+    
+    @Setup
+    public void setup() throws IOException {
+        JsonObject addon;
+        try (Reader reader = new InputStreamReader(BindingMemoryBenchmark.class.getResourceAsStream("/addon.json"), StandardCharsets.UTF_8)) {
+            addon = CurseMetaAPI.GSON.fromJson(reader, JsonObject.class);
+        }
+        JsonArray addons = new JsonArray();
+        for(int i = 0; i < ADDONS; i++) {
+            JsonObject copy = addon.deepCopy();
+            copy.addProperty("id", i);
+            copy.addProperty("name", "Addon " + i);
+            copy.addProperty("slug", "addon-" + i);
+            copy.addProperty("summary", "The summary of addon " + i);
+            addons.add(copy);
+        }
+        json = addons.toString();
+        gson = binding.equals("lean") ? LeanBinding.GSON : CurseMetaAPI.GSON;
+    }
+    
+    @Benchmark
+    public CurseMetaAPI.Addon[] bind() {
+        long before = usedHeap();
+        CurseMetaAPI.Addon[] addons = gson.fromJson(json, CurseMetaAPI.Addon[].class);
+        retained = usedHeap() - before;
+        return addons;
+    }
+    
+    @TearDown(Level.Iteration)
+    public void printRetained() {
+        System.out.printf("retained heap (%s): %.2f MiB per %d addons%n", binding, retained / 1048576.0, ADDONS);
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of {@link CurseMetaClient} fetching the recorded addon and a search page of 50 addons
+ * from a local http server, from the request to the bound result.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@State(Scope.Benchmark)
+public class FetchBenchmark {
+    HttpServer server;
+    CurseMetaClient client;
+    MetaSearch search;
+    
+    @Setup
+    public void setup() throws IOException {
+        JsonObject addon;
+        try (Reader reader = new InputStreamReader(FetchBenchmark.class.getResourceAsStream("/addon.json"), StandardCharsets.UTF_8)) {
+            addon = CurseMetaAPI.GSON.fromJson(reader, JsonObject.class);
+        }
+        JsonArray page = new JsonArray();
+        for(int i = 0; i < 50; i++) {
+            JsonObject copy = addon.deepCopy();
+            copy.addProperty("id", i);
+            page.add(copy);
+        }
+        byte[] addonBody = addon.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] searchBody = page.toString().getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = exchange.getRequestURI().getPath().endsWith("/search") ? searchBody : addonBody;
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        client = CurseMetaClient.create().setApi("http://127.0.0.1:" + server.getAddress().getPort()).setFallbackOnError(false);
+        search = MetaSearch.create(432).setSectionId(6).setPageSize(50);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+    }
+    
+    @Benchmark
+    public CurseMetaAPI.Addon getAddon() {
+        return client.getAddon(238222).join();
+    }
+    
+    @Benchmark
+    public List<CurseMetaAPI.Addon> search() {
+        return client.search(search).join();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the hashing throughput of {@link Fingerprint}, on one file at a time and on a directory of files hashed at the same time.
+ * <p>
+ * The {@code megabytes} counter is the throughput in MB/s, the files are read from the page cache after the warmup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FingerprintBenchmark {
+    private static final int FILES = 32;
+    
+    @State(Scope.Benchmark)
+    public static class Mods {
+        @Param({"1048576", "16777216"})
+        int size;
+        Path directory;
+        List<Path> files;
+        
+        @Setup
+        public void setup() throws IOException {
+            directory = Files.createTempDirectory("fingerprint");
+            files = new ArrayList<>();
+            Random random = new Random(42);
+            byte[] bytes = new byte[size];
+            for(int i = 0; i < FILES; i++) {
+                random.nextBytes(bytes);
+                files.add(Files.write(directory.resolve("mod-" + i + ".jar"), bytes));
+            }
+        }
+        
+        @TearDown
+        public void tearDown() throws IOException {
+            try (Stream<Path> stream = Files.walk(directory)) {
+                for(Path path : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator)
+                    Files.delete(path);
+            }
+        }
+    }
+    
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public double megabytes;
+        int next;
+    }
+    
+    @Benchmark
+    public long hashFile(Mods mods, Counters counters) throws IOException {
+        long fingerprint = Fingerprint.hash(mods.files.get(counters.next++ % FILES));
+        counters.megabytes += mods.size / 1048576.0;
+        return fingerprint;
+    }
+    
+    @Benchmark
+    public Map<Path, Long> hashAll(Mods mods, Counters counters) {
+        Map<Path, Long> fingerprints = Fingerprint.hashAll(mods.files, ForkJoinPool.commonPool()).join();
+        counters.megabytes += (double) mods.size * FILES / 1048576.0;
+        return fingerprints;
+    }
+}
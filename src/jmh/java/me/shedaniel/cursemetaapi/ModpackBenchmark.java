@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares resolving a modpack manifest with {@link ModpackResolver} against the files fetched in bulk followed by
+ * one addon at a time, against a {@link FakeTransport} answering every request after 1ms.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModpackBenchmark {
+    @Param({"50", "300", "1000"})
+    int entries;
+    String manifest;
+    CurseMetaClient client;
+    
+    @Setup
+    public void setup() {
+        FakeTransport transport = FakeTransport.create().setLatency(1, 1, TimeUnit.MILLISECONDS);
+        StringBuilder files = new StringBuilder();
+        for(int i = 1; i <= entries; i++) {
+            Addon addon = new Addon();
+            addon.id = i;
+            addon.name = "Mod " + i;
+            AddonFile file = new AddonFile();
+            file.fileId = 100_000 + i;
+            file.fileName = "mod-" + i + ".jar";
+            file.fileLength = 1024 * i;
+            file.downloadUrl = "https://edge.forgecdn.net/files/" + i + "/" + file.fileId + "/" + file.fileName;
+            transport.addAddon(addon).addFile(i, file);
+            files.append(i == 1 ? "" : ",").append("{\"projectID\":").append(i).append(",\"fileID\":").append(file.fileId).append(",\"required\":true}");
+        }
+        manifest = "{\"minecraft\":{\"version\":\"1.12.2\",\"modLoaders\":[{\"id\":\"forge-14.23.5.2847\",\"primary\":true}]},\"name\":\"Pack\",\"files\":[" + files + "]}";
+        client = CurseMetaClient.create().setApi("http://fake.invalid").setTransport(transport);
+    }
+    
+    @Benchmark
+    public ModpackResolver.Pack pipelined() throws IOException {
+        return ModpackResolver.create(client).resolve(ModpackResolver.parse(new StringReader(manifest))).join();
+    }
+    
+    @Benchmark
+    public List<Addon> serial() throws IOException {
+        ModpackResolver.Manifest parsed = ModpackResolver.parse(new StringReader(manifest));
+        int[] projectIds = parsed.getEntries().stream().mapToInt(ModpackResolver.Entry::getProjectId).toArray();
+        int[] fileIds = parsed.getEntries().stream().mapToInt(ModpackResolver.Entry::getFileId).toArray();
+        client.getAddonFiles(projectIds, fileIds).join();
+        List<Addon> addons = new ArrayList<>();
+        for(int projectId : projectIds)
+            addons.add(client.getAddon(projectId).join());
+        return addons;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares loading 10k addons from a json file with opening a {@link BinarySnapshot} of them, the sizes of the files
+ * and the heap retained by each are printed once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+    static final int ADDONS = 10_000;
+
+    Path json;
+    Path snapshot;
+
+    @Setup
+    public void setup() throws IOException {
+        JsonObject addon;
+        try (Reader reader = new InputStreamReader(SnapshotBenchmark.class.getResourceAsStream("/addon.json"), StandardCharsets.UTF_8)) {
+            addon = CurseMetaAPI.GSON.fromJson(reader, JsonObject.class);
+        }
+        List<CurseMetaAPI.Addon> addons = new ArrayList<>();
+        for(int i = 0; i < ADDONS; i++) {
+            JsonObject copy = addon.deepCopy();
+            copy.addProperty("id", i);
+            copy.addProperty("name", "Addon " + i);
+            copy.addProperty("slug", "addon-" + i);
+            copy.addProperty("summary", "The summary of addon " + i);
+            addons.add(CurseMetaAPI.GSON.fromJson(copy, CurseMetaAPI.Addon.class));
+        }
+        json = Files.createTempFile("addons", ".json");
+        Files.write(json, CurseMetaAPI.GSON.toJson(addons).getBytes(StandardCharsets.UTF_8));
+        snapshot = Files.createTempFile("addons", ".bin");
+        BinarySnapshot.writeAddons(snapshot, addons);
+
+        long before = usedHeap();
+        CurseMetaAPI.Addon[] loaded = loadJson();
+        long jsonRetained = usedHeap() - before;
+        before = usedHeap();
+        BinarySnapshot.Addons opened = openSnapshot();
+        long snapshotRetained = usedHeap() - before;
+        System.out.printf("%njson: %.2f MiB file, %.2f MiB retained heap for %d addons%n", Files.size(json) / 1048576.0, jsonRetained / 1048576.0, loaded.length);
+        System.out.printf("snapshot: %.2f MiB file, %.2f MiB retained heap for %d addons%n", Files.size(snapshot) / 1048576.0, snapshotRetained / 1048576.0, opened.size());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(json);
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public CurseMetaAPI.Addon[] loadJson() throws IOException {
+        try (Reader reader = Files.newBufferedReader(json, StandardCharsets.UTF_8)) {
+            return CurseMetaAPI.GSON.fromJson(reader, CurseMetaAPI.Addon[].class);
+        }
+    }
+
+    @Benchmark
+    public BinarySnapshot.Addons openSnapshot() throws IOException {
+        return BinarySnapshot.openAddons(snapshot);
+    }
+
+    @Benchmark
+    public CurseMetaAPI.Addon openSnapshotGetOne() throws IOException {
+        return BinarySnapshot.openAddons(snapshot).getById(ADDONS / 2);
+    }
+
+    @Benchmark
+    public String openSnapshotGetName() throws IOException {
+        BinarySnapshot.Addons addons = BinarySnapshot.openAddons(snapshot);
+        return addons.getName(addons.indexOf(ADDONS / 2));
+    }
+
+    @Benchmark
+    public List<CurseMetaAPI.Addon> loadSnapshot() throws IOException {
+        return BinarySnapshot.openAddons(snapshot).getAll();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares fetching an addon through {@link HttpURLConnectionTransport} with the previous one-shot
+ * {@link HttpURLConnection} streams, which were never closed, against a local http server.
+ * <p>
+ * The {@code connections} counter is the number of connections the server accepted, a status of 404 shows
+ * the connections lost by not draining the error body.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class TransportBenchmark {
+    
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"200", "404"})
+        int status;
+        HttpServer server;
+        URL url;
+        final HttpURLConnectionTransport transport = new HttpURLConnectionTransport();
+        final Set<InetSocketAddress> remotes = ConcurrentHashMap.newKeySet();
+        final AtomicLong connections = new AtomicLong();
+        
+        @Setup
+        public void setup() throws IOException {
+            StringBuilder json = new StringBuilder("{\"id\":32274,\"name\":\"Just Enough Items\",\"latestFiles\":[");
+            for(int i = 0; i < 50; i++)
+                json.append(i == 0 ? "" : ",").append("{\"id\":").append(2700000 + i).append(",\"fileName\":\"jei-").append(i).append(".jar\"}");
+            byte[] body = json.append("]}\n").toString().getBytes(StandardCharsets.UTF_8);
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> {
+                if (remotes.add(exchange.getRemoteAddress()))
+                    connections.incrementAndGet();
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/api/v2/addon/32274");
+        }
+        
+        @TearDown
+        public void tearDown() {
+            server.stop(0);
+        }
+    }
+    
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long connections;
+    }
+    
+    @Benchmark
+    public CurseMetaAPI.Addon pooledTransport(Server server, Counters counters) {
+        try (Transport.Response response = server.transport.execute(Transport.Request.get(server.url)).ensureSuccess()) {
+            return CurseMetaAPI.GSON.fromJson(new InputStreamReader(response.getBody()), CurseMetaAPI.Addon.class);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            counters.connections += server.connections.getAndSet(0);
+        }
+    }
+    
+    @Benchmark
+    public CurseMetaAPI.Addon unclosedStream(Server server, Counters counters) {
+        try {
+            HttpURLConnection con = (HttpURLConnection) server.url.openConnection();
+            con.setRequestMethod("GET");
+            con.setRequestProperty("User-Agent", CurseMetaAPI.InternetUtils.USER_AGENT);
+            return CurseMetaAPI.GSON.fromJson(new InputStreamReader(con.getInputStream()), CurseMetaAPI.Addon.class);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            counters.connections += server.connections.getAndSet(0);
+        }
+    }
+}
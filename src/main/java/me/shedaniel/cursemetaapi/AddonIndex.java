@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon.AddonLatestFiles;
+
+import java.util.*;
+
+/**
+ * Looks up addons by addon id, by slug and by the ids of their latest files, such as of the results of
+ * {@link CurseMetaClient#search(MetaSearch)}. The ids are not boxed.
+ * <p>
+ * The files are the {@link Addon#latestFiles} and the files of {@link Addon#gameVersionLatestFiles}. Adding an addon
+ * with the id of an addon already added replaces it. The index is not thread-safe, build it before sharing it.
+ */
+public class AddonIndex {
+    private final IntObjectMap<Addon> byId = new IntObjectMap<>();
+    private final IntObjectMap<Addon> byFileId = new IntObjectMap<>();
+    private final IntObjectMap<AddonLatestFiles> files = new IntObjectMap<>();
+    private final Map<String, Addon> bySlug = new HashMap<>();
+    
+    private AddonIndex() {}
+    
+    public static AddonIndex create() {
+        return new AddonIndex();
+    }
+    
+    /**
+     * @param addons the addons, such as the results of a search
+     * @return the index of the addons
+     */
+    public static AddonIndex of(Collection<Addon> addons) {
+        return create().addAll(addons);
+    }
+    
+    public AddonIndex add(Addon addon) {
+        Addon previous = byId.put(addon.id, addon);
+        if (previous != null)
+            unindex(previous);
+        if (addon.slug != null)
+            bySlug.put(addon.slug, addon);
+        if (addon.latestFiles != null)
+            for(AddonLatestFiles file : addon.latestFiles) {
+                byFileId.put(file.id, addon);
+                files.put(file.id, file);
+            }
+        if (addon.gameVersionLatestFiles != null)
+            for(Addon.AddonGameVersionFiles file : addon.gameVersionLatestFiles)
+                if (file.projectFileId > 0)
+                    byFileId.put(file.projectFileId, addon);
+        return this;
+    }
+    
+    public AddonIndex addAll(Collection<Addon> addons) {
+        for(Addon addon : addons)
+            add(addon);
+        return this;
+    }
+    
+    public int size() {
+        return byId.size();
+    }
+    
+    /**
+     * @param id the addon id
+     * @return the addon, null if not found
+     */
+    public Addon getAddon(int id) {
+        return byId.get(id);
+    }
+    
+    /**
+     * @param slug the slug, such as {@code jei}
+     * @return the addon, null if not found
+     */
+    public Addon getAddonBySlug(String slug) {
+        return bySlug.get(slug);
+    }
+    
+    /**
+     * @param fileId the file id
+     * @return the addon of the file, null if not found
+     */
+    public Addon getAddonByFileId(int fileId) {
+        return byFileId.get(fileId);
+    }
+    
+    /**
+     * @param fileId the file id
+     * @return the file from the latest files of its addon, null if not found
+     */
+    public AddonLatestFiles getLatestFile(int fileId) {
+        return files.get(fileId);
+    }
+    
+    private void unindex(Addon addon) {
+        if (addon.slug != null && bySlug.get(addon.slug) == addon)
+            bySlug.remove(addon.slug);
+        if (addon.latestFiles != null)
+            for(AddonLatestFiles file : addon.latestFiles)
+                if (byFileId.get(file.id) == addon) {
+                    byFileId.remove(file.id);
+                    files.remove(file.id);
+                }
+        if (addon.gameVersionLatestFiles != null)
+            for(Addon.AddonGameVersionFiles file : addon.gameVersionLatestFiles)
+                if (byFileId.get(file.projectFileId) == addon)
+                    byFileId.remove(file.projectFileId);
+    }
+}
@@ -0,0 +1,716 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.google.gson.*;
+import com.google.gson.annotations.SerializedName;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFile;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * A compact binary snapshot of addons or addon files, the snapshot is mapped and a record is only decoded once it is
+ * asked for.
+ * <p>
+ * The ids, names, dates and download counts or file lengths are kept in columns read in place, every other field
+ * is kept in the record of the addon or file. Strings, including the keys of the records, are kept once in a string
+ * table and referenced by varints.
+ * <pre>
+ * int magic, int version, int kind, int count, int strings, int stringBytes, int recordBytes
+ * int[count] ids, sorted
+ * int[count] names, string references or -1
+ * long[count] dates, milliseconds since the epoch or Long.MIN_VALUE
+ * long[count] numbers, the bits of the download count or the file length
+ * int[count + 1] record offsets
+ * int[strings + 1] string offsets
+ * byte[stringBytes] strings, UTF-8
+ * byte[recordBytes] records
+ * </pre>
+ *
+ * @param <T> the type of the records
+ */
+public abstract class BinarySnapshot<T> {
+    static final int MAGIC = 0x434d5342;
+    static final int VERSION = 1;
+    static final int KIND_ADDONS = 1;
+    static final int KIND_FILES = 2;
+    private static final int HEADER = 28;
+    private static final byte NULL = 0, FALSE = 1, TRUE = 2, INTEGER = 3, DOUBLE = 4, NUMBER = 5, STRING = 6, ARRAY = 7, OBJECT = 8;
+    
+    private final ByteBuffer buffer;
+    private final Class<T> type;
+    private final int count;
+    private final int ids;
+    private final int names;
+    private final int dates;
+    private final int numbers;
+    private final int recordOffsets;
+    private final int stringOffsets;
+    private final int stringsStart;
+    private final int recordsStart;
+    private final String[] strings;
+    
+    BinarySnapshot(ByteBuffer buffer, Class<T> type) {
+        this.buffer = buffer;
+        this.type = type;
+        this.count = buffer.getInt(12);
+        int stringCount = buffer.getInt(16);
+        this.ids = HEADER;
+        this.names = ids + count * 4;
+        this.dates = names + count * 4;
+        this.numbers = dates + count * 8;
+        this.recordOffsets = numbers + count * 8;
+        this.stringOffsets = recordOffsets + (count + 1) * 4;
+        this.stringsStart = stringOffsets + (stringCount + 1) * 4;
+        this.recordsStart = stringsStart + buffer.getInt(20);
+        this.strings = new String[stringCount];
+    }
+    
+    /**
+     * Writes the addons to a temporary file, then moves it to the path, of the addons with the same id the last is kept.
+     *
+     * @param path   the path
+     * @param addons the addons
+     * @throws IOException if the snapshot failed to be written
+     */
+    public static void writeAddons(Path path, Collection<Addon> addons) throws IOException {
+        Encoder encoder = new Encoder(KIND_ADDONS);
+        for(Addon addon : unique(addons, addon -> addon.id))
+            encoder.add(addon.id, addon.name, dateModified(addon), Double.doubleToRawLongBits(addon.downloadCount), addon);
+        encoder.write(path);
+    }
+    
+    /**
+     * Writes the files to a temporary file, then moves it to the path, of the files with the same id the last is kept.
+     *
+     * @param path  the path
+     * @param files the files
+     * @throws IOException if the snapshot failed to be written
+     */
+    public static void writeFiles(Path path, Collection<AddonFile> files) throws IOException {
+        Encoder encoder = new Encoder(KIND_FILES);
+        for(AddonFile file : unique(files, file -> file.fileId))
+            encoder.add(file.fileId, file.fileName, fileDate(file), file.fileLength, file);
+        encoder.write(path);
+    }
+    
+    /**
+     * @param path the path
+     * @return the mapped snapshot
+     * @throws IOException if the snapshot failed to be read, is not a snapshot of addons or is not of this version
+     */
+    public static Addons openAddons(Path path) throws IOException {
+        return new Addons(map(path, KIND_ADDONS));
+    }
+    
+    /**
+     * @param path the path
+     * @return the mapped snapshot
+     * @throws IOException if the snapshot failed to be read, is not a snapshot of files or is not of this version
+     */
+    public static AddonFiles openFiles(Path path) throws IOException {
+        return new AddonFiles(map(path, KIND_FILES));
+    }
+    
+    public int size() {
+        return count;
+    }
+    
+    /**
+     * @param index the index of the record, records are sorted by id
+     * @return the id
+     */
+    public int getId(int index) {
+        return buffer.getInt(ids + checkIndex(index) * 4);
+    }
+    
+    /**
+     * @param id the id
+     * @return the index of the record, -1 if not found
+     */
+    public int indexOf(int id) {
+        int low = 0, high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = buffer.getInt(ids + middle * 4);
+            if (value < id)
+                low = middle + 1;
+            else if (value > id)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -1;
+    }
+    
+    /**
+     * Decodes the record, a new object is returned on every call.
+     *
+     * @param index the index of the record
+     * @return the record
+     */
+    public T get(int index) {
+        int start = recordsStart + buffer.getInt(recordOffsets + checkIndex(index) * 4);
+        return type.cast(new RecordReader(start).read(type));
+    }
+    
+    /**
+     * @param id the id
+     * @return the record, null if not found
+     */
+    public T getById(int id) {
+        int index = indexOf(id);
+        return index < 0 ? null : get(index);
+    }
+    
+    /**
+     * @return every record decoded, sorted by id
+     */
+    public List<T> getAll() {
+        List<T> all = new ArrayList<>(count);
+        for(int i = 0; i < count; i++)
+            all.add(get(i));
+        return all;
+    }
+    
+    String name(int index) {
+        return string(buffer.getInt(names + checkIndex(index) * 4));
+    }
+    
+    long date(int index) {
+        return buffer.getLong(dates + checkIndex(index) * 8);
+    }
+    
+    long number(int index) {
+        return buffer.getLong(numbers + checkIndex(index) * 8);
+    }
+    
+    private int checkIndex(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        return index;
+    }
+    
+    private String string(int reference) {
+        if (reference < 0)
+            return null;
+        String string = strings[reference];
+        if (string == null) {
+            int start = buffer.getInt(stringOffsets + reference * 4);
+            byte[] bytes = new byte[buffer.getInt(stringOffsets + reference * 4 + 4) - start];
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(stringsStart + start);
+            duplicate.get(bytes);
+            strings[reference] = string = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return string;
+    }
+    
+    private static ByteBuffer map(Path path, int kind) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a binary snapshot: " + path);
+        int version = buffer.getInt(4);
+        if (version != VERSION)
+            throw new IOException("Unsupported binary snapshot version " + version + ": " + path);
+        if (buffer.getInt(8) != kind)
+            throw new IOException("Binary snapshot of " + (kind == KIND_ADDONS ? "files" : "addons") + ": " + path);
+        long count = buffer.getInt(12), strings = buffer.getInt(16);
+        long length = HEADER + count * 28 + 4 + (strings + 1) * 4 + buffer.getInt(20) + buffer.getInt(24);
+        if (count < 0 || strings < 0 || length != buffer.capacity())
+            throw new IOException("Truncated binary snapshot: " + path);
+        return buffer;
+    }
+    
+    private static <T> Collection<T> unique(Collection<T> records, ToIntFunction<T> id) {
+        TreeMap<Integer, T> unique = new TreeMap<>();
+        for(T record : records)
+            unique.put(id.applyAsInt(record), record);
+        return unique.values();
+    }
+    
+    private static long dateModified(Addon addon) {
+        try {
+            return addon.dateModified == null ? Long.MIN_VALUE : addon.getDateModifiedMillis();
+        } catch (ParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+    
+    private static long fileDate(AddonFile file) {
+        try {
+            return file.fileDate == null ? Long.MIN_VALUE : Iso8601.parseMillis(file.fileDate);
+        } catch (ParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+    
+    public static class Addons extends BinarySnapshot<Addon> {
+        private Addons(ByteBuffer buffer) {
+            super(buffer, Addon.class);
+        }
+        
+        /**
+         * @param index the index of the addon
+         * @return the name, without decoding the addon
+         */
+        public String getName(int index) {
+            return name(index);
+        }
+        
+        /**
+         * @param index the index of the addon
+         * @return the milliseconds since the epoch of the date modified, {@link Long#MIN_VALUE} if unknown
+         */
+        public long getDateModifiedMillis(int index) {
+            return date(index);
+        }
+        
+        public double getDownloadCount(int index) {
+            return Double.longBitsToDouble(number(index));
+        }
+    }
+    
+    public static class AddonFiles extends BinarySnapshot<AddonFile> {
+        private AddonFiles(ByteBuffer buffer) {
+            super(buffer, AddonFile.class);
+        }
+        
+        /**
+         * @param index the index of the file
+         * @return the file name, without decoding the file
+         */
+        public String getFileName(int index) {
+            return name(index);
+        }
+        
+        /**
+         * @param index the index of the file
+         * @return the milliseconds since the epoch of the file date, {@link Long#MIN_VALUE} if unknown
+         */
+        public long getFileDateMillis(int index) {
+            return date(index);
+        }
+        
+        public int getFileLength(int index) {
+            return (int) number(index);
+        }
+    }
+    
+    /**
+     * Reads a record in place into the fields of its class, the fields are looked up by the keys of the record.
+     */
+    private final class RecordReader {
+        private int position;
+        
+        RecordReader(int position) {
+            this.position = position;
+        }
+        
+        Object read(Type type) {
+            return read(buffer.get(position++), type);
+        }
+        
+        private Object read(byte tag, Type type) {
+            Class<?> raw = type instanceof ParameterizedType ? (Class<?>) ((ParameterizedType) type).getRawType() : (Class<?>) type;
+            if (JsonElement.class.isAssignableFrom(raw))
+                return element(tag);
+            if (tag == NULL)
+                return null;
+            if (raw == String.class)
+                return text(tag);
+            if (raw == Integer.class || raw == int.class)
+                return (int) integer(tag);
+            if (raw == Long.class || raw == long.class)
+                return integer(tag);
+            if (raw == Double.class || raw == double.class)
+                return number(tag);
+            if (raw == Float.class || raw == float.class)
+                return (float) number(tag);
+            if (raw == Boolean.class || raw == boolean.class)
+                return bool(tag);
+            if (Collection.class.isAssignableFrom(raw) && raw.isAssignableFrom(ArrayList.class)) {
+                expect(tag, ARRAY);
+                Type element = type instanceof ParameterizedType ? ((ParameterizedType) type).getActualTypeArguments()[0] : JsonElement.class;
+                int size = (int) readVarLong();
+                List<Object> list = new ArrayList<>(size);
+                for(int i = 0; i < size; i++)
+                    list.add(read(element));
+                return list;
+            }
+            expect(tag, OBJECT);
+            Binding binding = Binding.of(raw);
+            Object object = binding.newInstance();
+            for(int fields = (int) readVarLong(); fields > 0; fields--) {
+                Field field = binding.fields.get(string((int) readVarLong()));
+                if (field == null)
+                    skip();
+                else
+                    read(field, object);
+            }
+            return object;
+        }
+        
+        /**
+         * Reads the value into the field, primitive fields are set without boxing.
+         */
+        private void read(Field field, Object object) {
+            byte tag = buffer.get(position++);
+            Class<?> type = field.getType();
+            try {
+                if (!type.isPrimitive())
+                    field.set(object, read(tag, field.getGenericType()));
+                else if (tag == NULL)
+                    return;
+                else if (type == int.class)
+                    field.setInt(object, (int) integer(tag));
+                else if (type == long.class)
+                    field.setLong(object, integer(tag));
+                else if (type == double.class)
+                    field.setDouble(object, number(tag));
+                else if (type == float.class)
+                    field.setFloat(object, (float) number(tag));
+                else if (type == boolean.class)
+                    field.setBoolean(object, bool(tag));
+                else
+                    throw new IllegalStateException("Unsupported field " + field);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Inaccessible field " + field, e);
+            }
+        }
+        
+        private JsonElement element(byte tag) {
+            switch (tag) {
+                case NULL:
+                    return JsonNull.INSTANCE;
+                case FALSE:
+                case TRUE:
+                    return new JsonPrimitive(tag == TRUE);
+                case INTEGER:
+                    return new JsonPrimitive(readInteger());
+                case DOUBLE:
+                    return new JsonPrimitive(readDouble());
+                case NUMBER:
+                    return new JsonPrimitive(new BigDecimal(string((int) readVarLong())));
+                case STRING:
+                    return new JsonPrimitive(string((int) readVarLong()));
+                case ARRAY:
+                    JsonArray array = new JsonArray();
+                    for(int size = (int) readVarLong(); size > 0; size--)
+                        array.add(element(buffer.get(position++)));
+                    return array;
+                case OBJECT:
+                    JsonObject object = new JsonObject();
+                    for(int size = (int) readVarLong(); size > 0; size--) {
+                        String name = string((int) readVarLong());
+                        object.add(name, element(buffer.get(position++)));
+                    }
+                    return object;
+                default:
+                    throw unknown(tag);
+            }
+        }
+        
+        private String text(byte tag) {
+            switch (tag) {
+                case FALSE:
+                case TRUE:
+                    return Boolean.toString(tag == TRUE);
+                case INTEGER:
+                    return Long.toString(readInteger());
+                case DOUBLE:
+                    return Double.toString(readDouble());
+                case NUMBER:
+                case STRING:
+                    return string((int) readVarLong());
+                default:
+                    throw unexpected(tag, "a string");
+            }
+        }
+        
+        private long integer(byte tag) {
+            if (tag == INTEGER)
+                return readInteger();
+            double value = number(tag);
+            if (value != (long) value)
+                throw new NumberFormatException("Expected a long but was " + value + " at " + position);
+            return (long) value;
+        }
+        
+        private double number(byte tag) {
+            if (tag == INTEGER)
+                return readInteger();
+            if (tag == DOUBLE)
+                return readDouble();
+            if (tag == NUMBER || tag == STRING)
+                return Double.parseDouble(string((int) readVarLong()));
+            throw unexpected(tag, "a number");
+        }
+        
+        private boolean bool(byte tag) {
+            if (tag != FALSE && tag != TRUE)
+                throw unexpected(tag, "a boolean");
+            return tag == TRUE;
+        }
+        
+        private void skip() {
+            byte tag = buffer.get(position++);
+            switch (tag) {
+                case NULL:
+                case FALSE:
+                case TRUE:
+                    break;
+                case INTEGER:
+                case NUMBER:
+                case STRING:
+                    readVarLong();
+                    break;
+                case DOUBLE:
+                    position += 8;
+                    break;
+                case ARRAY:
+                    for(int size = (int) readVarLong(); size > 0; size--)
+                        skip();
+                    break;
+                case OBJECT:
+                    for(int size = (int) readVarLong(); size > 0; size--) {
+                        readVarLong();
+                        skip();
+                    }
+                    break;
+                default:
+                    throw unknown(tag);
+            }
+        }
+        
+        private void expect(byte tag, byte expected) {
+            if (tag != expected)
+                throw unexpected(tag, expected == ARRAY ? "an array" : "an object");
+        }
+        
+        private IllegalStateException unexpected(byte tag, String expected) {
+            return new IllegalStateException("Expected " + expected + " but was tag " + tag + " at " + (position - 1));
+        }
+        
+        private IllegalStateException unknown(byte tag) {
+            return new IllegalStateException("Unknown tag " + tag + " at " + (position - 1));
+        }
+        
+        private long readInteger() {
+            long zigzag = readVarLong();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        
+        private double readDouble() {
+            double value = buffer.getDouble(position);
+            position += 8;
+            return value;
+        }
+        
+        private long readVarLong() {
+            long value = 0;
+            for(int shift = 0; ; shift += 7) {
+                byte b = buffer.get(position++);
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0)
+                    return value;
+            }
+        }
+    }
+    
+    /**
+     * The constructor and the fields of a record class by their serialized names, like the reflective binding of
+     * {@link CurseMetaAPI#GSON}. Static and transient fields are left out.
+     */
+    private static final class Binding {
+        private static final Map<Class<?>, Binding> BINDINGS = new ConcurrentHashMap<>();
+        private final Constructor<?> constructor;
+        private final Map<String, Field> fields = new HashMap<>();
+        
+        private Binding(Class<?> type) {
+            try {
+                this.constructor = type.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("No constructor without parameters: " + type.getName(), e);
+            }
+            for(Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+                for(Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()))
+                        continue;
+                    field.setAccessible(true);
+                    SerializedName serializedName = field.getAnnotation(SerializedName.class);
+                    fields.putIfAbsent(serializedName == null ? field.getName() : serializedName.value(), field);
+                    if (serializedName != null)
+                        for(String alternate : serializedName.alternate())
+                            fields.putIfAbsent(alternate, field);
+                }
+        }
+        
+        static Binding of(Class<?> type) {
+            return BINDINGS.computeIfAbsent(type, Binding::new);
+        }
+        
+        Object newInstance() {
+            try {
+                return constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to create " + constructor.getDeclaringClass().getName(), e);
+            }
+        }
+    }
+    
+    /**
+     * Encodes the records in memory, the columns and the string table are only known once every record is added.
+     */
+    private static class Encoder {
+        private final int kind;
+        private final Map<String, Integer> references = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        private final List<long[]> columns = new ArrayList<>();
+        
+        Encoder(int kind) {
+            this.kind = kind;
+        }
+        
+        void add(int id, String name, long date, long number, Object record) {
+            columns.add(new long[]{id, name == null ? -1 : reference(name), date, number, records.size()});
+            writeElement(CurseMetaAPI.GSON.toJsonTree(record));
+        }
+        
+        void write(Path path) throws IOException {
+            ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+            int[] stringOffsets = new int[strings.size() + 1];
+            for(int i = 0; i < strings.size(); i++) {
+                byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                stringBytes.write(bytes, 0, bytes.length);
+                stringOffsets[i + 1] = stringBytes.size();
+            }
+            long length = HEADER + columns.size() * 28L + 4 + stringOffsets.length * 4L + stringBytes.size() + records.size();
+            if (length > Integer.MAX_VALUE)
+                throw new IOException("Binary snapshot too large: " + length + " bytes");
+            Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(kind);
+                    out.writeInt(columns.size());
+                    out.writeInt(strings.size());
+                    out.writeInt(stringBytes.size());
+                    out.writeInt(records.size());
+                    for(long[] column : columns)
+                        out.writeInt((int) column[0]);
+                    for(long[] column : columns)
+                        out.writeInt((int) column[1]);
+                    for(long[] column : columns)
+                        out.writeLong(column[2]);
+                    for(long[] column : columns)
+                        out.writeLong(column[3]);
+                    for(long[] column : columns)
+                        out.writeInt((int) column[4]);
+                    out.writeInt(records.size());
+                    for(int offset : stringOffsets)
+                        out.writeInt(offset);
+                    stringBytes.writeTo(out);
+                    records.writeTo(out);
+                }
+                CurseMetaAPI.InternetUtils.move(temp, path);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        
+        private int reference(String string) {
+            Integer reference = references.get(string);
+            if (reference == null) {
+                references.put(string, reference = strings.size());
+                strings.add(string);
+            }
+            return reference;
+        }
+        
+        private void writeElement(JsonElement element) {
+            if (element.isJsonNull())
+                records.write(NULL);
+            else if (element.isJsonArray()) {
+                records.write(ARRAY);
+                writeVarLong(element.getAsJsonArray().size());
+                for(JsonElement child : element.getAsJsonArray())
+                    writeElement(child);
+            } else if (element.isJsonObject()) {
+                records.write(OBJECT);
+                writeVarLong(element.getAsJsonObject().size());
+                for(Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                    writeVarLong(reference(entry.getKey()));
+                    writeElement(entry.getValue());
+                }
+            } else {
+                JsonPrimitive primitive = element.getAsJsonPrimitive();
+                if (primitive.isBoolean())
+                    records.write(primitive.getAsBoolean() ? TRUE : FALSE);
+                else if (primitive.isString()) {
+                    records.write(STRING);
+                    writeVarLong(reference(primitive.getAsString()));
+                } else
+                    writeNumber(primitive.getAsNumber());
+            }
+        }
+        
+        private void writeNumber(Number number) {
+            if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+                long value = number.longValue();
+                records.write(INTEGER);
+                writeVarLong((value << 1) ^ (value >> 63));
+            } else if (number instanceof Double || number instanceof Float) {
+                long bits = Double.doubleToRawLongBits(number.doubleValue());
+                records.write(DOUBLE);
+                for(int shift = 56; shift >= 0; shift -= 8)
+                    records.write((int) (bits >>> shift));
+            } else {
+                records.write(NUMBER);
+                writeVarLong(reference(number.toString()));
+            }
+        }
+        
+        private void writeVarLong(long value) {
+            while ((value & ~0x7fL) != 0) {
+                records.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            records.write((int) value);
+        }
+    }
+}
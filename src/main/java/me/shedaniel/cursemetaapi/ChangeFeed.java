@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Polls the addons modified since the checkpoint, newest first with {@link MetaSearch.SortMethod#LAST_UPDATED}
+ * descending, and stops paging at the first addon modified before the checkpoint.
+ * <p>
+ * The checkpoint is the last modified date seen and the addons modified at that date, so they are not emitted twice.
+ * It only moves once a poll has read every page, a failed poll emits its deltas again on the next poll.
+ */
+public class ChangeFeed {
+    private final CurseMetaClient client;
+    private final MetaSearch search;
+    private Path checkpointFile;
+    private long checkpoint;
+    private Set<Integer> checkpointIds = new HashSet<>();
+    
+    private ChangeFeed(CurseMetaClient client, MetaSearch search) {
+        this.client = client;
+        this.search = search.copy().setSortingMethod(MetaSearch.SortMethod.LAST_UPDATED).setSortDescending(true);
+    }
+    
+    /**
+     * @param client the client
+     * @param search the search polled, such as the search of a section, the sort and page index are replaced
+     */
+    public static ChangeFeed create(CurseMetaClient client, MetaSearch search) {
+        return new ChangeFeed(Objects.requireNonNull(client), search);
+    }
+    
+    public Path getCheckpointFile() {
+        return checkpointFile;
+    }
+    
+    /**
+     * Reads the checkpoint from the file if it exists, the checkpoint is written to the file after every poll.
+     *
+     * @param checkpointFile the file, null to keep the checkpoint in memory
+     */
+    public synchronized ChangeFeed setCheckpointFile(Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+        if (checkpointFile != null && Files.isRegularFile(checkpointFile)) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+                this.checkpoint = Long.parseLong(properties.getProperty("checkpoint", "0"));
+                this.checkpointIds = Arrays.stream(properties.getProperty("ids", "").split(",")).filter(id -> !id.isEmpty()).map(Integer::valueOf).collect(Collectors.toCollection(HashSet::new));
+            } catch (IOException | NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * @return the milliseconds since the epoch of the last modified addon seen, 0 if never polled
+     */
+    public synchronized long getCheckpoint() {
+        return checkpoint;
+    }
+    
+    /**
+     * @param checkpoint the milliseconds since the epoch, addons modified at or after it are emitted by the next poll
+     */
+    public synchronized ChangeFeed setCheckpoint(long checkpoint) {
+        this.checkpoint = checkpoint;
+        this.checkpointIds = new HashSet<>();
+        return this;
+    }
+    
+    /**
+     * @return the future of the deltas since the checkpoint, newest first, completes exceptionally if error
+     * @see #poll(Consumer)
+     */
+    public CompletableFuture<List<Delta>> poll() {
+        List<Delta> deltas = new ArrayList<>();
+        return poll(deltas::add).thenApply(count -> deltas);
+    }
+    
+    /**
+     * Emits the deltas since the checkpoint as the pages are read, then moves the checkpoint.
+     *
+     * @param consumer the consumer of the deltas, newest first, on the executor of the client
+     * @return the future of the number of deltas, completes exceptionally if error
+     */
+    public CompletableFuture<Integer> poll(Consumer<? super Delta> consumer) {
+        return CompletableFuture.supplyAsync(() -> {
+            synchronized (this) {
+                try {
+                    return read(consumer);
+                } catch (IOException | ParseException e) {
+                    throw new CompletionException(e);
+                }
+            }
+        }, client.getExecutor());
+    }
+    
+    private int read(Consumer<? super Delta> consumer) throws IOException, ParseException {
+        int pageSize = Math.max(1, search.getPageSize());
+        long newest = checkpoint;
+        Set<Integer> newestIds = new HashSet<>(checkpointIds);
+        // Addons modified while paging move to the first page and push the others to the next page
+        Set<Integer> emitted = new HashSet<>();
+        for(int index = 0; ; index += pageSize) {
+            int read = 0;
+            boolean reached = false;
+            try (JsonArrayIterator<Addon> page = client.iterateSearch(search.copy().setPageIndex(index).setPageSize(pageSize))) {
+                while (page.hasNext()) {
+                    Addon addon = page.next();
+                    read++;
+                    long modified = addon.getDateModifiedMillis();
+                    if (modified < checkpoint) {
+                        reached = true;
+                        break;
+                    }
+                    if (modified == checkpoint && checkpointIds.contains(addon.id) || !emitted.add(addon.id))
+                        continue;
+                    boolean added = checkpoint == 0 || addon.dateCreated != null && addon.getDateCreatedMillis() > checkpoint;
+                    consumer.accept(new Delta(added ? Delta.Type.ADDED : Delta.Type.CHANGED, addon));
+                    if (modified > newest) {
+                        newest = modified;
+                        newestIds.clear();
+                    }
+                    if (modified == newest)
+                        newestIds.add(addon.id);
+                }
+            }
+            if (reached || read < pageSize)
+                break;
+        }
+        checkpoint = newest;
+        checkpointIds = newestIds;
+        if (checkpointFile != null)
+            writeCheckpoint();
+        return emitted.size();
+    }
+    
+    private void writeCheckpoint() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("checkpoint", String.valueOf(checkpoint));
+        properties.setProperty("ids", checkpointIds.stream().sorted().map(String::valueOf).collect(Collectors.joining(",")));
+        StringWriter writer = new StringWriter();
+        properties.store(writer, null);
+        Path temp = Files.createTempFile(checkpointFile.toAbsolutePath().getParent(), checkpointFile.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, writer.toString().getBytes(StandardCharsets.UTF_8));
+            CurseMetaAPI.InternetUtils.move(temp, checkpointFile);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    public static class Delta {
+        private final Type type;
+        private final Addon addon;
+        
+        Delta(Type type, Addon addon) {
+            this.type = type;
+            this.addon = addon;
+        }
+        
+        /**
+         * @return {@link Type#ADDED} if the addon was created since the checkpoint, or the first poll
+         */
+        public Type getType() {
+            return type;
+        }
+        
+        public Addon getAddon() {
+            return addon;
+        }
+        
+        public enum Type {
+            ADDED,
+            CHANGED
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import java.io.IOException;
+
+/**
+ * Thrown without sending the request while the host keeps failing.
+ *
+ * @see ResilientTransport
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+    private final String host;
+    private final long retryAt;
+    
+    public CircuitOpenException(String host, long retryAt) {
+        super("Circuit open for " + host + ", retrying in " + Math.max(0, retryAt - System.currentTimeMillis()) + "ms");
+        this.host = host;
+        this.retryAt = retryAt;
+    }
+    
+    public String getHost() {
+        return host;
+    }
+    
+    /**
+     * @return the milliseconds since the epoch when a request is let through again
+     */
+    public long getRetryAt() {
+        return retryAt;
+    }
+}
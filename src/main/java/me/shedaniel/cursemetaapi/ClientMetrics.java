@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+/**
+ * Listener of the requests of a {@link CurseMetaClient}, see {@link CurseMetaClient#setMetrics(ClientMetrics)}.
+ * <p>
+ * The methods are called on the threads of the requests, they must be thread safe and return quickly.
+ * The client does not measure anything while the listener is {@link #NONE}.
+ *
+ * @see MetricsRecorder
+ */
+public interface ClientMetrics {
+    /**
+     * The default listener, ignoring everything.
+     */
+    ClientMetrics NONE = new ClientMetrics() {};
+    
+    /**
+     * @param endpoint the endpoint, such as {@code addon} or {@code addon.search}
+     */
+    default void requestStarted(String endpoint) {}
+    
+    /**
+     * The network time is the time sending the request, waiting for the bytes of the body and closing the response.
+     * The deserialization time is the rest of the time reading the body into objects.
+     *
+     * @param endpoint             the endpoint, such as {@code addon} or {@code addon.search}
+     * @param status               the status, -1 if the request failed to be sent
+     * @param networkNanos         the network time
+     * @param deserializationNanos the deserialization time, -1 if the body is read by the caller such as
+     *                             {@link CurseMetaClient#iterateSearch(MetaSearch)}, the time is then counted in neither
+     * @param bytes                the bytes of the body read, decompressed
+     * @param error                the error, null if successful
+     */
+    default void requestCompleted(String endpoint, int status, long networkNanos, long deserializationNanos, long bytes, Throwable error) {}
+    
+    /**
+     * @param endpoint the endpoint of the cache
+     * @param hit      whether the value was cached or already being requested
+     */
+    default void cacheLookup(ResponseCache.Endpoint endpoint, boolean hit) {}
+}
@@ -18,30 +18,46 @@ package me.shedaniel.cursemetaapi;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.annotations.SerializedName;
 
 import java.io.*;
-import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLEncoder;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * @author shedaniel
  */
 public class CurseMetaAPI {
-    
+
     public static final String API = "https://addons-ecs.forgesvc.net";
     public static final Gson GSON = new GsonBuilder().create();
+    private static volatile CurseMetaClient client;
+    
+    /**
+     * @return the client used by the static methods
+     */
+    public static CurseMetaClient getClient() {
+        if (client == null)
+            synchronized (CurseMetaAPI.class) {
+                if (client == null)
+                    client = CurseMetaClient.create();
+            }
+        return client;
+    }
+    
+    /**
+     * @param client the client used by the static methods
+     */
+    public static void setClient(CurseMetaClient client) {
+        CurseMetaAPI.client = Objects.requireNonNull(client);
+    }
     
     /**
      * Returns the addon by the addon id.
@@ -50,33 +66,26 @@ public class CurseMetaAPI {
      * @return the addon, returns null if error
      */
     public static Addon getAddon(int id) {
-        try {
-            URL url = new URL(API + "/api/v2/addon/" + id);
-            Addon object = GSON.fromJson(new InputStreamReader(InternetUtils.getSiteStream(url)), Addon.class);
-            return object;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        return getClient().getAddon(id).join();
     }
     
     /**
+     * Returns the addons by the addon ids, the ids are posted to the api in chunks of {@value CurseMetaClient#ADDONS_CHUNK_SIZE}.
+     *
      * @param ids the addon id
-     * @return the list of addons, return empty list if error
-     * @throws NullPointerException if > 50 addons
+     * @return the list of addons in the order of the ids, return empty list if error
      */
     public static List<Addon> getAddons(int... ids) {
-        try {
-            List<Addon> addons = new ArrayList<>();
-            for(int id : ids) {
-                Addon addon = getAddon(id);
-                if (addon != null)
-                    addons.add(addon);
-            }
-            return addons;
-        } catch (Exception e) {
-        }
-        return Collections.emptyList();
+        return getAddonsAsync(ids).join();
+    }
+    
+    /**
+     * @param ids the addon id
+     * @return the future of the list of addons in the order of the ids, completes with empty list if error
+     * @see #getAddons(int...)
+     */
+    public static CompletableFuture<List<Addon>> getAddonsAsync(int... ids) {
+        return getClient().getAddons(ids);
     }
     
     /**
@@ -85,12 +94,7 @@ public class CurseMetaAPI {
      * @return the file, returns null if error
      */
     public static AddonFile getAddonFile(int addon, int fileId) {
-        try {
-            return GSON.fromJson(new InputStreamReader(InternetUtils.getSiteStream(new URL(API + "/api/v2/addon/" + addon + "/file/" + fileId))), AddonFile.class);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        return getClient().getAddonFile(addon, fileId).join();
     }
     
     /**
@@ -101,85 +105,65 @@ public class CurseMetaAPI {
      * @return the changelog in html, returns null if error
      */
     public static String getAddonFileChangelog(int addon, int fileId) {
-        try {
-            return InternetUtils.getSite(new URL(API + "/api/v2/addon/" + addon + "/file/" + fileId + "/changelog"));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return null;
+        return getClient().getAddonFileChangelog(addon, fileId).join();
     }
     
     /**
      * @param addons  the addons id
      * @param fileIds the files id
-     * @return the list of files, return empty list if error
-     * @throws NullPointerException if addons' and fileIds' size is the not same
+     * @return the list of files in the order of the file ids, return empty list if error
+     * @throws IllegalArgumentException if addons' and fileIds' size is the not same
      */
     public static List<AddonFile> getAddonFiles(int[] addons, int fileIds[]) {
-        try {
-            List<AddonFile> files = new ArrayList<>();
-            for(int i = 0; i < addons.length; i++) {
-                int addon = addons[i];
-                int fileId = fileIds[i];
-                AddonFile file = getAddonFile(addon, fileId);
-                if (file != null)
-                    files.add(file);
-            }
-            return files;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return Collections.emptyList();
+        return getClient().getAddonFiles(addons, fileIds).join();
+    }
+    
+    /**
+     * Returns the files by the file ids, the ids are posted to the api in chunks of {@value CurseMetaClient#FILES_CHUNK_SIZE}.
+     *
+     * @param fileIds the files id
+     * @return the files found, the file ids that are not found and the file ids that failed to be fetched
+     */
+    public static AddonFilesBulk getAddonFilesBulk(int... fileIds) {
+        return getAddonFilesBulkAsync(fileIds).join();
+    }
+    
+    /**
+     * @param fileIds the files id
+     * @return the future of the files found, the file ids that are not found and the file ids that failed to be fetched
+     * @see #getAddonFilesBulk(int...)
+     */
+    public static CompletableFuture<AddonFilesBulk> getAddonFilesBulkAsync(int... fileIds) {
+        return getClient().getAddonFilesBulk(fileIds);
     }
     
     public static List<AddonFile> getAddonFiles(int addonId) {
-        try {
-            JsonArray array = GSON.fromJson(new InputStreamReader(InternetUtils.getSiteStream(new URL(API + "/api/v2/addon/" + addonId + "/files"))), JsonArray.class);
-            List<AddonFile> files = new ArrayList<>();
-            array.forEach(jsonElement -> {
-                if (jsonElement.isJsonObject())
-                    try {
-                        files.add(GSON.fromJson(jsonElement, AddonFile.class));
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-            });
-            return files;
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return Collections.emptyList();
+        return getClient().getAddonFiles(addonId).join();
+    }
+    
+    /**
+     * Reads the files of the addon one at a time, without holding the list of files.
+     *
+     * @param addonId the addon id
+     * @return the iterator of the files, close it to stop early
+     * @throws IOException if the request failed
+     */
+    public static JsonArrayIterator<AddonFile> iterateAddonFiles(int addonId) throws IOException {
+        return getClient().iterateAddonFiles(addonId);
+    }
+    
+    /**
+     * Matches the files by the fingerprints, the fingerprints are posted to the api in chunks of {@value CurseMetaClient#FINGERPRINTS_CHUNK_SIZE}.
+     *
+     * @param fingerprints the fingerprints, see {@link Fingerprint}
+     * @return the matches found and the fingerprints that are not matched or failed to be fetched
+     */
+    public static FingerprintMatches getFingerprintMatches(long... fingerprints) {
+        return getClient().getFingerprintMatches(fingerprints).join();
     }
     
     static List<Addon> search(MetaSearch metaSearch) {
-        try {
-            String args = "";
-            args += "&index=" + metaSearch.getPageIndex();
-            args += "&pageSize=" + metaSearch.getPageSize();
-            args += "&sort=" + URLEncoder.encode(metaSearch.getSort().getName(), "UTF-8");
-            args += "&isSortDescending=" + metaSearch.getSortDescending();
-            if (metaSearch.getSectionId() != null)
-                args += "&sectionId=" + metaSearch.getSectionId();
-            if (metaSearch.getCategoryId() != null)
-                args += "&categoryId=" + metaSearch.getCategoryId();
-            if (metaSearch.getGameVersion() != null)
-                args += "&gameVersion=" + URLEncoder.encode(metaSearch.getGameVersion(), "UTF-8");
-            if (metaSearch.getSearchFilter() != null)
-                args += "&searchFilter=" + URLEncoder.encode(metaSearch.getSearchFilter(), "UTF-8");
-            JsonArray array = GSON.fromJson(new InputStreamReader(InternetUtils.getSiteStream(new URL(API + "/api/v2/addon/search?gameId=" + metaSearch.getGameId() + args))), JsonArray.class);
-            List<Addon> addons = new ArrayList<>();
-            array.forEach(jsonElement -> {
-                try {
-                    addons.add(GSON.fromJson(jsonElement, Addon.class));
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            });
-            return addons;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return Collections.emptyList();
+        return getClient().search(metaSearch).join();
     }
     
     /**
@@ -187,51 +171,253 @@ public class CurseMetaAPI {
      * @return the html in a form of a String, returns null if error
      */
     public static String getAddonDescription(int id) {
-        try {
-            return InternetUtils.getSite(new URL(API + "/api/v2/addon/" + id + "/description"));
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        return getClient().getAddonDescription(id).join();
     }
     
     public static class InternetUtils {
-        
+    
         public static final String USER_AGENT = "Mozilla/5.0";
+        private static final int BUFFER_SIZE = 8192;
+        private static final int MAX_PRESIZE = 64 * 1024 * 1024;
+        
+        private static volatile Transport transport = new HttpURLConnectionTransport();
+        private static final DownloadManager DOWNLOADS = DownloadManager.create();
+        
+        /**
+         * @return the transport used by default, a {@link HttpURLConnectionTransport} unless replaced
+         */
+        public static Transport getTransport() {
+            return transport;
+        }
+        
+        public static void setTransport(Transport transport) {
+            InternetUtils.transport = Objects.requireNonNull(transport);
+        }
         
         public static String getSite(URL url) throws IOException {
-            return getStringFromStream(getSiteStream(url));
+            try (Transport.Response response = transport.execute(Transport.Request.get(url)).ensureSuccess()) {
+                return getStringFromResponse(response);
+            }
         }
         
+        /**
+         * @param url the url
+         * @return the body, drains and releases the connection when closed
+         * @throws IOException if the request failed or the status is not successful
+         */
         public static InputStream getSiteStream(URL url) throws IOException {
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("GET");
-            con.setRequestProperty("User-Agent", USER_AGENT);
-            return con.getInputStream();
+            return transport.execute(Transport.Request.get(url)).ensureSuccess().getBody();
+        }
+        
+        /**
+         * @param url  the url
+         * @param json the json posted
+         * @return the body, drains and releases the connection when closed
+         * @throws IOException if the request failed or the status is not successful
+         */
+        public static InputStream postSiteStream(URL url, String json) throws IOException {
+            return transport.execute(Transport.Request.post(url, json.getBytes(StandardCharsets.UTF_8))).ensureSuccess().getBody();
         }
         
+        /**
+         * Reads the stream in UTF-8 to the end and closes it.
+         *
+         * @param stream the stream
+         * @return the content of the stream
+         * @throws IOException if the stream failed to be read
+         */
         public static String getStringFromStream(InputStream stream) throws IOException {
-            InputStreamReader inputStreamReader = new InputStreamReader(stream);
-            BufferedReader in = new BufferedReader(inputStreamReader);
-            String inputLine;
-            StringBuffer response = new StringBuffer();
-            while ((inputLine = in.readLine()) != null)
-                response.append(inputLine);
-            in.close();
-            stream.close();
-            return response.toString();
+            return getStringFromStream(stream, StandardCharsets.UTF_8, -1);
         }
         
+        /**
+         * Reads the stream to the end and closes it, the bytes are decoded at once.
+         *
+         * @param stream         the stream
+         * @param charset        the charset of the stream
+         * @param expectedLength the length of the stream in bytes if known, -1 otherwise
+         * @return the content of the stream
+         * @throws IOException if the stream failed to be read
+         */
+        public static String getStringFromStream(InputStream stream, Charset charset, long expectedLength) throws IOException {
+            try (InputStream in = stream) {
+                // One more byte than expected so the end of the stream is read without growing the buffer
+                Bytes bytes = new Bytes(expectedLength >= 0 && expectedLength < MAX_PRESIZE ? (int) expectedLength + 1 : BUFFER_SIZE);
+                bytes.readFrom(in);
+                return bytes.toString(charset);
+            }
+        }
+        
+        /**
+         * Reads the body in the charset of its Content-Type, UTF-8 if absent, and closes it.
+         *
+         * @param response the response
+         * @return the content of the body
+         * @throws IOException if the body failed to be read
+         */
+        public static String getStringFromResponse(Transport.Response response) throws IOException {
+            return getStringFromStream(response.getBody(), getCharset(response), getContentLength(response));
+        }
+        
+        /**
+         * Writes the stream to the writer as it is read, then closes the stream. The writer is not closed.
+         *
+         * @param stream  the stream
+         * @param charset the charset of the stream
+         * @param writer  the writer
+         * @return the number of chars written
+         * @throws IOException if the stream failed to be read or the writer failed to be written
+         */
+        public static long copyStream(InputStream stream, Charset charset, Writer writer) throws IOException {
+            try (Reader reader = new InputStreamReader(stream, charset)) {
+                char[] buffer = new char[BUFFER_SIZE];
+                long written = 0;
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    writer.write(buffer, 0, read);
+                    written += read;
+                }
+                return written;
+            }
+        }
+        
+        /**
+         * Writes the stream to the file in UTF-8 as it is read, through a temporary file moved to the file once complete,
+         * then closes the stream. The bytes are copied as they are unless the stream is in another charset.
+         *
+         * @param stream  the stream
+         * @param charset the charset of the stream
+         * @param file    the file
+         * @return the file
+         * @throws IOException if the stream failed to be read or the file failed to be written
+         */
+        public static Path copyStream(InputStream stream, Charset charset, Path file) throws IOException {
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try (InputStream in = stream) {
+                if (charset.equals(StandardCharsets.UTF_8))
+                    Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                else
+                    try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                        copyStream(in, charset, writer);
+                    }
+                move(temp, file);
+                return file;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        
+        /**
+         * Moves the file atomically, or replaces the target with a plain move if the file system cannot move
+         * atomically.
+         *
+         * @param source the file moved, such as a temporary file next to the target
+         * @param target the file replaced
+         * @throws IOException if the file failed to be moved
+         */
+        static void move(Path source, Path target) throws IOException {
+            try {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        
+        /**
+         * Writes the body in the charset of its Content-Type to the file in UTF-8.
+         *
+         * @see #copyStream(InputStream, Charset, Path)
+         */
+        public static Path copyResponse(Transport.Response response, Path file) throws IOException {
+            return copyStream(response.getBody(), getCharset(response), file);
+        }
+        
+        /**
+         * @return the charset parameter of the Content-Type, UTF-8 if absent or not supported
+         */
+        static Charset getCharset(Transport.Response response) {
+            String contentType = response.getHeader("Content-Type");
+            if (contentType != null)
+                for(String parameter : contentType.split(";")) {
+                    parameter = parameter.trim();
+                    if (parameter.regionMatches(true, 0, "charset=", 0, 8))
+                        try {
+                            return Charset.forName(parameter.substring(8).replace("\"", "").trim());
+                        } catch (IllegalArgumentException e) {
+                            return StandardCharsets.UTF_8;
+                        }
+                }
+            return StandardCharsets.UTF_8;
+        }
+        
+        /**
+         * @return the Content-Length if the body is not decompressed, -1 otherwise
+         */
+        static long getContentLength(Transport.Response response) {
+            String encoding = response.getHeader("Content-Encoding");
+            String contentLength = response.getHeader("Content-Length");
+            if (contentLength == null || encoding != null && !encoding.equalsIgnoreCase("identity"))
+                return -1;
+            try {
+                return Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        
+        /**
+         * Downloads to the file through a {@code .part} file, which is resumed if left by a failed download. Urls
+         * other than http and https, such as {@code file:} and {@code jar:} urls, are copied from their stream.
+         *
+         * @param url  the url
+         * @param file the file
+         * @throws IOException if the download failed
+         * @see DownloadManager
+         */
         public static void downloadToFile(URL url, File file) throws IOException {
-            ReadableByteChannel rbc = Channels.newChannel(url.openStream());
-            FileOutputStream fos = new FileOutputStream(file);
-            fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
+            if (!url.getProtocol().equalsIgnoreCase("http") && !url.getProtocol().equalsIgnoreCase("https")) {
+                try (InputStream in = url.openStream()) {
+                    Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                return;
+            }
+            try {
+                DOWNLOADS.download(url, file.toPath(), 0, 0).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw e;
+            }
         }
         
+        /**
+         * A byte buffer read into directly, decoded without copying the bytes.
+         */
+        private static class Bytes {
+            private byte[] buf;
+            private int count;
+            
+            Bytes(int size) {
+                this.buf = new byte[Math.max(1, size)];
+            }
+            
+            void readFrom(InputStream in) throws IOException {
+                int read;
+                while ((read = in.read(buf, count, buf.length - count)) != -1) {
+                    count += read;
+                    if (count == buf.length)
+                        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, buf.length + BUFFER_SIZE));
+                }
+            }
+            
+            String toString(Charset charset) {
+                return new String(buf, 0, count, charset);
+            }
+        }
+    
     }
     
     public static class Addon {
-        private static SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSX");
         public int id;
         public String name;
         public List<AddonAuthor> authors;
@@ -261,16 +447,61 @@ public class CurseMetaAPI {
         public boolean isAvailable;
         @SerializedName("isExperiemental") public boolean isExperimental;
         
+        private transient ParsedDate parsedDateCreated;
+        private transient ParsedDate parsedDateModified;
+        private transient ParsedDate parsedDateReleased;
+        
         public Date getDateCreated() throws ParseException {
-            return format.parse(dateCreated + "Z");
+            return new Date(getDateCreatedMillis());
         }
         
         public Date getDateModified() throws ParseException {
-            return format.parse(dateModified + "Z");
+            return new Date(getDateModifiedMillis());
         }
         
         public Date getDateReleased() throws ParseException {
-            return format.parse(dateReleased + "Z");
+            return new Date(getDateReleasedMillis());
+        }
+        
+        /**
+         * @return the milliseconds since the epoch of the date created, parsed once
+         */
+        public long getDateCreatedMillis() throws ParseException {
+            return (parsedDateCreated = ParsedDate.of(parsedDateCreated, dateCreated)).millis;
+        }
+        
+        /**
+         * @return the milliseconds since the epoch of the date modified, parsed once
+         */
+        public long getDateModifiedMillis() throws ParseException {
+            return (parsedDateModified = ParsedDate.of(parsedDateModified, dateModified)).millis;
+        }
+        
+        /**
+         * @return the milliseconds since the epoch of the date released, parsed once
+         */
+        public long getDateReleasedMillis() throws ParseException {
+            return (parsedDateReleased = ParsedDate.of(parsedDateReleased, dateReleased)).millis;
+        }
+        
+        private static class ParsedDate {
+            private final String date;
+            private final long millis;
+            
+            private ParsedDate(String date, long millis) {
+                this.date = date;
+                this.millis = millis;
+            }
+            
+            /**
+             * Reuses the parsed date unless the date string changed, the holder is immutable so racing threads
+             * at most parse the date twice.
+             */
+            static ParsedDate of(ParsedDate parsed, String date) throws ParseException {
+                if (parsed != null && parsed.date == date)
+                    return parsed;
+                return new ParsedDate(date, Iso8601.parseMillis(date));
+            }
         }
         
         public static class AddonAttachment {
@@ -384,6 +615,88 @@ public class CurseMetaAPI {
         }
     }
     
+    public static class AddonFilesBulk {
+        private final IntObjectMap<AddonFile> files;
+        private final int[] fileIds;
+        private final int[] missingFileIds;
+        private final int[] failedFileIds;
+        private volatile Map<Integer, AddonFile> filesMap;
+        
+        AddonFilesBulk(IntObjectMap<AddonFile> files, int[] fileIds, int[] missingFileIds, int[] failedFileIds) {
+            this.files = files;
+            this.fileIds = fileIds;
+            this.missingFileIds = missingFileIds;
+            this.failedFileIds = failedFileIds;
+        }
+        
+        /**
+         * @param fileId the file id
+         * @return the file found, null if missing
+         */
+        public AddonFile getFile(int fileId) {
+            return files.get(fileId);
+        }
+        
+        /**
+         * @return the files found, keyed by the file id, boxed on the first call
+         * @see #getFile(int)
+         */
+        public Map<Integer, AddonFile> getFiles() {
+            Map<Integer, AddonFile> map = filesMap;
+            if (map == null) {
+                map = new LinkedHashMap<>(fileIds.length * 2);
+                for(int fileId : fileIds)
+                    map.put(fileId, files.get(fileId));
+                filesMap = map = Collections.unmodifiableMap(map);
+            }
+            return map;
+        }
+        
+        /**
+         * @return the file ids that the api answered as not found
+         */
+        public int[] getMissingFileIds() {
+            return missingFileIds.clone();
+        }
+        
+        /**
+         * @return the file ids that failed to be fetched, such as in a chunk answered with an error
+         */
+        public int[] getFailedFileIds() {
+            return failedFileIds.clone();
+        }
+    }
+    
+    public static class FingerprintMatch {
+        @SerializedName("id") public int addonId;
+        public AddonFile file;
+        public List<AddonFile> latestFiles;
+    }
+    
+    public static class FingerprintMatches {
+        private final Map<Long, FingerprintMatch> matches;
+        private final long[] unmatchedFingerprints;
+        
+        FingerprintMatches(Map<Long, FingerprintMatch> matches, long[] unmatchedFingerprints) {
+            this.matches = Collections.unmodifiableMap(matches);
+            this.unmatchedFingerprints = unmatchedFingerprints;
+        }
+        
+        /**
+         * @return the exact matches, keyed by the fingerprint
+         */
+        public Map<Long, FingerprintMatch> getMatches() {
+            return matches;
+        }
+        
+        /**
+         * @return the fingerprints that are not matched or failed to be fetched
+         */
+        public long[] getUnmatchedFingerprints() {
+            return unmatchedFingerprints.clone();
+        }
+    }
+    
     public static class AddonFile {
         @SerializedName("id") public int fileId;
         public String displayName;
@@ -414,5 +727,5 @@ public class CurseMetaAPI {
             public long fingerprint;
         }
     }
-    
+
 }
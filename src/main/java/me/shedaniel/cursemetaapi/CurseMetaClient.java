@@ -0,0 +1,774 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFile;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFilesBulk;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.FingerprintMatch;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.FingerprintMatches;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.InternetUtils;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static me.shedaniel.cursemetaapi.CurseMetaAPI.GSON;
+
+/**
+ * An instance of the api, every request is run on the executor and returns a {@link CompletableFuture}.
+ * <p>
+ * The futures complete with null or an empty list if error, the same as the methods in {@link CurseMetaAPI}, unless
+ * {@link #setFallbackOnError(boolean)} is false.
+ */
+public class CurseMetaClient {
+    static final int ADDONS_CHUNK_SIZE = 50;
+    static final int FILES_CHUNK_SIZE = 50;
+    static final int FINGERPRINTS_CHUNK_SIZE = 500;
+    /**
+     * Reads the body in the charset of the response, sized from its length.
+     */
+    private static final StreamReader<String> STRING = new StreamReader<String>() {
+        @Override
+        public String read(InputStream stream) throws IOException {
+            return InternetUtils.getStringFromStream(stream);
+        }
+        
+        @Override
+        public String read(Transport.Response response, InputStream stream) throws IOException {
+            return InternetUtils.getStringFromStream(stream, InternetUtils.getCharset(response), InternetUtils.getContentLength(response));
+        }
+    };
+    private static final Type ADDON_FILES_BULK_TYPE = new TypeToken<Map<Integer, List<AddonFile>>>() {}.getType();
+    private String api;
+    private Transport transport;
+    private Gson gson;
+    private Executor executor;
+    private ResponseCache cache;
+    private int maxRequestsPerHost;
+    private boolean fallbackOnError;
+    private ClientMetrics metrics;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    
+    private CurseMetaClient() {
+        this.api = CurseMetaAPI.API;
+        this.maxRequestsPerHost = 16;
+        this.fallbackOnError = true;
+        this.metrics = ClientMetrics.NONE;
+    }
+    
+    public static CurseMetaClient create() {
+        return new CurseMetaClient();
+    }
+    
+    public String getApi() {
+        return api;
+    }
+    
+    /**
+     * @param api the base url of the api, defaults to {@link CurseMetaAPI#API}
+     */
+    public CurseMetaClient setApi(String api) {
+        this.api = api;
+        return this;
+    }
+    
+    /**
+     * @return the transport sending the requests, defaults to {@link InternetUtils#getTransport()}
+     */
+    public Transport getTransport() {
+        return transport == null ? InternetUtils.getTransport() : transport;
+    }
+    
+    public CurseMetaClient setTransport(Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+    
+    /**
+     * @return the gson binding the responses, defaults to {@link CurseMetaAPI#GSON}
+     */
+    public Gson getGson() {
+        return gson == null ? GSON : gson;
+    }
+    
+    /**
+     * @param gson the gson binding the responses, such as {@link LeanBinding#GSON}
+     */
+    public CurseMetaClient setGson(Gson gson) {
+        this.gson = gson;
+        return this;
+    }
+    
+    /**
+     * @return the executor running the requests, defaults to virtual threads if the jvm supports them,
+     * otherwise a pool of {@value DefaultExecutor#THREADS} daemon threads
+     */
+    public Executor getExecutor() {
+        if (executor == null)
+            executor = DefaultExecutor.get();
+        return executor;
+    }
+    
+    public CurseMetaClient setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+    
+    /**
+     * @return the cache of the responses, null if not cached
+     */
+    public ResponseCache getCache() {
+        return cache;
+    }
+    
+    /**
+     * @param cache the cache of the responses, null to not cache, defaults to null
+     */
+    public CurseMetaClient setCache(ResponseCache cache) {
+        this.cache = cache;
+        return this;
+    }
+    
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+    
+    /**
+     * @param maxRequestsPerHost the maximum of requests open to the same host at the same time, defaults to 16
+     */
+    public CurseMetaClient setMaxRequestsPerHost(int maxRequestsPerHost) {
+        if (maxRequestsPerHost < 1)
+            throw new IllegalArgumentException("maxRequestsPerHost must be positive: " + maxRequestsPerHost);
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        hostPermits.clear();
+        return this;
+    }
+    
+    public boolean isFallbackOnError() {
+        return fallbackOnError;
+    }
+    
+    /**
+     * @param fallbackOnError whether the futures complete with null or an empty list if error, otherwise they complete
+     *                        exceptionally with the cause, such as {@link HttpStatusException} if not found or
+     *                        {@link CircuitOpenException} if the api is down, defaults to true
+     */
+    public CurseMetaClient setFallbackOnError(boolean fallbackOnError) {
+        this.fallbackOnError = fallbackOnError;
+        return this;
+    }
+    
+    public ClientMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * @param metrics the listener of the requests, such as {@link MetricsRecorder}, defaults to {@link ClientMetrics#NONE}
+     */
+    public CurseMetaClient setMetrics(ClientMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+        return this;
+    }
+    
+    /**
+     * @param id the addon id
+     * @return the future of the addon, completes with null if error
+     * @see CurseMetaAPI#getAddon(int)
+     */
+    public CompletableFuture<Addon> getAddon(int id) {
+        return cached("addon", ResponseCache.Endpoint.ADDON, id, "/api/v2/addon/" + id, stream -> getGson().fromJson(new InputStreamReader(stream, StandardCharsets.UTF_8), Addon.class), null);
+    }
+    
+    /**
+     * @param ids the addon id
+     * @return the future of the list of addons in the order of the ids, completes with empty list if error
+     * @see CurseMetaAPI#getAddons(int...)
+     */
+    public CompletableFuture<List<Addon>> getAddons(int... ids) {
+        IntObjectMap<Addon> byId = new IntObjectMap<>(ids.length);
+        int[] distinctIds = Arrays.stream(IntSet.distinct(ids)).filter(id -> !fromCache(ResponseCache.Endpoint.ADDON, id, byId)).toArray();
+        List<CompletableFuture<List<Addon>>> chunks = new ArrayList<>();
+        for(int from = 0; from < distinctIds.length; from += ADDONS_CHUNK_SIZE) {
+            int[] chunk = Arrays.copyOfRange(distinctIds, from, Math.min(from + ADDONS_CHUNK_SIZE, distinctIds.length));
+            chunks.add(supply(() -> {
+                Addon[] addons = request("addon.bulk", new URL(api + "/api/v2/addon"), GSON.toJson(chunk), stream -> getGson().fromJson(new InputStreamReader(stream, StandardCharsets.UTF_8), Addon[].class));
+                if (addons == null)
+                    return Collections.<Addon>emptyList();
+                if (cache != null)
+                    for(Addon addon : addons)
+                        cache.put(ResponseCache.Endpoint.ADDON, addon.id, addon);
+                return Arrays.asList(addons);
+            }, Collections.emptyList()));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).thenApply(v -> {
+            for(CompletableFuture<List<Addon>> chunk : chunks)
+                for(Addon addon : chunk.join())
+                    byId.put(addon.id, addon);
+            List<Addon> addons = new ArrayList<>(ids.length);
+            for(int id : ids) {
+                Addon addon = byId.get(id);
+                if (addon != null)
+                    addons.add(addon);
+            }
+            return addons;
+        });
+    }
+    
+    /**
+     * @param addon  the addon id
+     * @param fileId the file id
+     * @return the future of the file, completes with null if error
+     * @see CurseMetaAPI#getAddonFile(int, int)
+     */
+    public CompletableFuture<AddonFile> getAddonFile(int addon, int fileId) {
+        return cached("addon.file", ResponseCache.Endpoint.ADDON_FILE, fileId, "/api/v2/addon/" + addon + "/file/" + fileId, stream -> getGson().fromJson(new InputStreamReader(stream, StandardCharsets.UTF_8), AddonFile.class), null);
+    }
+    
+    /**
+     * @param addon  the addon id
+     * @param fileId the file id
+     * @return the future of the changelog in html, completes with null if error
+     * @see CurseMetaAPI#getAddonFileChangelog(int, int)
+     */
+    public CompletableFuture<String> getAddonFileChangelog(int addon, int fileId) {
+        return cached("addon.file.changelog", ResponseCache.Endpoint.CHANGELOG, fileId, "/api/v2/addon/" + addon + "/file/" + fileId + "/changelog", STRING, null);
+    }
+    
+    /**
+     * Writes the changelog to the file as it is read, without caching it.
+     *
+     * @param addon  the addon id
+     * @param fileId the file id
+     * @param file   the file written in UTF-8
+     * @return the future of the file, completes with null if error
+     */
+    public CompletableFuture<Path> getAddonFileChangelog(int addon, int fileId, Path file) {
+        return supply(() -> request("addon.file.changelog", new URL(api + "/api/v2/addon/" + addon + "/file/" + fileId + "/changelog"), toFile(file)), null);
+    }
+    
+    /**
+     * @param addons  the addons id
+     * @param fileIds the files id
+     * @return the future of the list of files in the order of the file ids, completes with empty list if error
+     * @throws IllegalArgumentException if addons' and fileIds' size is the not same
+     * @see CurseMetaAPI#getAddonFiles(int[], int[])
+     */
+    public CompletableFuture<List<AddonFile>> getAddonFiles(int[] addons, int[] fileIds) {
+        if (addons.length != fileIds.length)
+            throw new IllegalArgumentException("addons and fileIds are not the same size: " + addons.length + " != " + fileIds.length);
+        return getAddonFilesBulk(fileIds).thenApply(bulk -> {
+            List<AddonFile> files = new ArrayList<>();
+            for(int fileId : fileIds) {
+                AddonFile file = bulk.getFile(fileId);
+                if (file != null)
+                    files.add(file);
+            }
+            return files;
+        });
+    }
+    
+    /**
+     * @param fileIds the files id
+     * @return the future of the files found, the file ids that are not found and the file ids that failed to be fetched
+     * @see CurseMetaAPI#getAddonFilesBulk(int...)
+     */
+    public CompletableFuture<AddonFilesBulk> getAddonFilesBulk(int... fileIds) {
+        int[] distinctIds = IntSet.distinct(fileIds);
+        IntObjectMap<AddonFile> found = new IntObjectMap<>(distinctIds.length);
+        int[] requestedIds = Arrays.stream(distinctIds).filter(id -> !fromCache(ResponseCache.Endpoint.ADDON_FILE, id, found)).toArray();
+        List<int[]> chunkIds = new ArrayList<>();
+        List<CompletableFuture<Map<Integer, List<AddonFile>>>> chunks = new ArrayList<>();
+        for(int from = 0; from < requestedIds.length; from += FILES_CHUNK_SIZE) {
+            int[] chunk = Arrays.copyOfRange(requestedIds, from, Math.min(from + FILES_CHUNK_SIZE, requestedIds.length));
+            chunkIds.add(chunk);
+            // A failed chunk completes with null, its ids are failed rather than not found
+            chunks.add(supply(() -> {
+                Map<Integer, List<AddonFile>> response = request("file.bulk", new URL(api + "/api/v2/addon/files"), GSON.toJson(chunk), stream -> getGson().fromJson(new InputStreamReader(stream, StandardCharsets.UTF_8), ADDON_FILES_BULK_TYPE));
+                if (response == null)
+                    return Collections.<Integer, List<AddonFile>>emptyMap();
+                if (cache != null)
+                    response.forEach((fileId, list) -> {
+                        if (list != null && !list.isEmpty())
+                            cache.put(ResponseCache.Endpoint.ADDON_FILE, fileId, list.get(0));
+                    });
+                return response;
+            }, null));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).thenApply(v -> {
+            IntSet failed = new IntSet();
+            for(int i = 0; i < chunks.size(); i++) {
+                Map<Integer, List<AddonFile>> chunk = chunks.get(i).join();
+                if (chunk == null) {
+                    for(int fileId : chunkIds.get(i))
+                        failed.add(fileId);
+                    continue;
+                }
+                chunk.forEach((fileId, list) -> {
+                    if (list != null && !list.isEmpty())
+                        found.put(fileId, list.get(0));
+                });
+            }
+            IntSet present = new IntSet(found.size());
+            IntSet missing = new IntSet();
+            for(int fileId : distinctIds)
+                if (found.get(fileId) != null)
+                    present.add(fileId);
+                else if (!failed.contains(fileId))
+                    missing.add(fileId);
+            return new AddonFilesBulk(found, present.toArray(), missing.toArray(), failed.toArray());
+        });
+    }
+    
+    /**
+     * @param addonId the addon id
+     * @return the future of the list of files of the addon, completes with empty list if error
+     * @see CurseMetaAPI#getAddonFiles(int)
+     */
+    public CompletableFuture<List<AddonFile>> getAddonFiles(int addonId) {
+        return cached("addon.files", ResponseCache.Endpoint.ADDON_FILES, addonId, "/api/v2/addon/" + addonId + "/files", stream -> readArray(getGson(), stream, AddonFile.class), Collections.emptyList());
+    }
+    
+    /**
+     * Reads the files of the addon one at a time, without holding the list of files.
+     *
+     * @param addonId the addon id
+     * @return the iterator of the files, close it to stop early
+     * @throws IOException if the request failed
+     */
+    public JsonArrayIterator<AddonFile> iterateAddonFiles(int addonId) throws IOException {
+        return iterate("addon.files", new URL(api + "/api/v2/addon/" + addonId + "/files"), AddonFile.class);
+    }
+    
+    /**
+     * @param addonId the addon id
+     * @param action  the action run on every file, on the executor
+     * @return the future completing once every file is read, completes exceptionally if error
+     * @see #iterateAddonFiles(int)
+     */
+    public CompletableFuture<Void> forEachAddonFile(int addonId, Consumer<? super AddonFile> action) {
+        return attempt(() -> {
+            try (JsonArrayIterator<AddonFile> iterator = iterateAddonFiles(addonId)) {
+                iterator.forEachRemaining(action);
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * @param fingerprints the fingerprints, see {@link Fingerprint}
+     * @return the future of the matches found and the fingerprints that are not matched or failed to be fetched
+     * @see CurseMetaAPI#getFingerprintMatches(long...)
+     */
+    public CompletableFuture<FingerprintMatches> getFingerprintMatches(long... fingerprints) {
+        long[] distinctFingerprints = Arrays.stream(fingerprints).distinct().toArray();
+        List<CompletableFuture<List<FingerprintMatch>>> chunks = new ArrayList<>();
+        for(int from = 0; from < distinctFingerprints.length; from += FINGERPRINTS_CHUNK_SIZE) {
+            long[] chunk = Arrays.copyOfRange(distinctFingerprints, from, Math.min(from + FINGERPRINTS_CHUNK_SIZE, distinctFingerprints.length));
+            chunks.add(supply(() -> {
+                FingerprintResponse response = request("fingerprint", new URL(api + "/api/v2/fingerprint"), GSON.toJson(chunk), stream -> getGson().fromJson(new InputStreamReader(stream, StandardCharsets.UTF_8), FingerprintResponse.class));
+                if (response == null || response.exactMatches == null)
+                    return Collections.<FingerprintMatch>emptyList();
+                if (cache != null)
+                    for(FingerprintMatch match : response.exactMatches)
+                        if (match.file != null)
+                            cache.put(ResponseCache.Endpoint.ADDON_FILE, match.file.fileId, match.file);
+                return response.exactMatches;
+            }, Collections.emptyList()));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).thenApply(v -> {
+            Map<Long, FingerprintMatch> matches = new LinkedHashMap<>();
+            for(CompletableFuture<List<FingerprintMatch>> chunk : chunks)
+                for(FingerprintMatch match : chunk.join())
+                    if (match.file != null)
+                        matches.put(match.file.packageFingerprint, match);
+            return new FingerprintMatches(matches, Arrays.stream(distinctFingerprints).filter(fingerprint -> !matches.containsKey(fingerprint)).toArray());
+        });
+    }
+    
+    /**
+     * Hashes the files at the same time on the executor, then matches them by the fingerprints.
+     *
+     * @param files the files, such as {@link Fingerprint#listJars(Path)}
+     * @return the future of the matches keyed by the file, files not matched are absent, completes with empty map if error
+     */
+    public CompletableFuture<Map<Path, FingerprintMatch>> matchFiles(Collection<Path> files) {
+        return orElse(Fingerprint.hashAll(files, getExecutor()).thenCompose(fingerprints -> {
+            long[] hashes = fingerprints.values().stream().mapToLong(Long::longValue).toArray();
+            return getFingerprintMatches(hashes).thenApply(matches -> {
+                Map<Path, FingerprintMatch> byFile = new LinkedHashMap<>();
+                fingerprints.forEach((file, fingerprint) -> {
+                    FingerprintMatch match = matches.getMatches().get(fingerprint);
+                    if (match != null)
+                        byFile.put(file, match);
+                });
+                return byFile;
+            });
+        }), Collections.emptyMap());
+    }
+    
+    /**
+     * @param id the project id
+     * @return the future of the html, completes with null if error
+     * @see CurseMetaAPI#getAddonDescription(int)
+     */
+    public CompletableFuture<String> getAddonDescription(int id) {
+        return cached("addon.description", ResponseCache.Endpoint.DESCRIPTION, id, "/api/v2/addon/" + id + "/description", STRING, null);
+    }
+    
+    /**
+     * Writes the description to the file as it is read, without caching it.
+     *
+     * @param id   the project id
+     * @param file the file written in UTF-8
+     * @return the future of the file, completes with null if error
+     */
+    public CompletableFuture<Path> getAddonDescription(int id, Path file) {
+        return supply(() -> request("addon.description", new URL(api + "/api/v2/addon/" + id + "/description"), toFile(file)), null);
+    }
+    
+    /**
+     * @param metaSearch the search
+     * @return the future of the list of addons found, completes with empty list if error
+     * @see MetaSearch#search()
+     */
+    public CompletableFuture<List<Addon>> search(MetaSearch metaSearch) {
+        return supply(() -> request("addon.search", searchUrl(metaSearch), stream -> readArray(getGson(), stream, Addon.class)), Collections.emptyList());
+    }
+    
+    /**
+     * Iterates every page of the search from the page index, the next page is requested in the background
+     * while the current page is read. Stops at the last page, which is shorter than the page size.
+     *
+     * @param metaSearch the search, later changes to it do not affect the iterator
+     * @param limit      the maximum of addons returned
+     * @return the iterator of the addons found, stops early if error
+     * @see MetaSearch#iterator()
+     */
+    public Iterator<Addon> searchAll(MetaSearch metaSearch, int limit) {
+        return new PagedSearchIterator(this, metaSearch, limit);
+    }
+    
+    /**
+     * Reads the page of the search one at a time, without holding the list of addons.
+     *
+     * @param metaSearch the search
+     * @return the iterator of the addons found, close it to stop early
+     * @throws IOException if the request failed
+     */
+    public JsonArrayIterator<Addon> iterateSearch(MetaSearch metaSearch) throws IOException {
+        return iterate("addon.search", searchUrl(metaSearch), Addon.class);
+    }
+    
+    URL searchUrl(MetaSearch metaSearch) throws IOException {
+        String args = "";
+        args += "&index=" + metaSearch.getPageIndex();
+        args += "&pageSize=" + metaSearch.getPageSize();
+        args += "&sort=" + URLEncoder.encode(metaSearch.getSort().getName(), "UTF-8");
+        args += "&isSortDescending=" + metaSearch.getSortDescending();
+        if (metaSearch.getSectionId() != null)
+            args += "&sectionId=" + metaSearch.getSectionId();
+        if (metaSearch.getCategoryId() != null)
+            args += "&categoryId=" + metaSearch.getCategoryId();
+        if (metaSearch.getGameVersion() != null)
+            args += "&gameVersion=" + URLEncoder.encode(metaSearch.getGameVersion(), "UTF-8");
+        if (metaSearch.getSearchFilter() != null)
+            args += "&searchFilter=" + URLEncoder.encode(metaSearch.getSearchFilter(), "UTF-8");
+        return new URL(api + "/api/v2/addon/search?gameId=" + metaSearch.getGameId() + args);
+    }
+    
+    private <T> CompletableFuture<T> supply(Request<T> request, T fallback) {
+        return orElse(attempt(request), fallback);
+    }
+    
+    private <T> CompletableFuture<T> cached(String name, ResponseCache.Endpoint endpoint, int id, String path, StreamReader<T> reader, T fallback) {
+        ResponseCache cache = this.cache;
+        if (cache == null)
+            return supply(() -> request(name, new URL(api + path), reader), fallback);
+        boolean[] missed = new boolean[1];
+        CompletableFuture<T> future = cache.get(endpoint, id, () -> {
+            missed[0] = true;
+            return attempt(() -> request(name, new URL(api + path), null, reader, cache, endpoint, id));
+        });
+        metrics.cacheLookup(endpoint, !missed[0]);
+        return orElse(future, fallback);
+    }
+    
+    private <T> boolean fromCache(ResponseCache.Endpoint endpoint, int id, IntObjectMap<T> found) {
+        if (cache == null)
+            return false;
+        T cached = cache.getIfPresent(endpoint, id);
+        if (cached != null)
+            found.put(id, cached);
+        metrics.cacheLookup(endpoint, cached != null);
+        return cached != null;
+    }
+    
+    private <T> CompletableFuture<T> attempt(Request<T> request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return request.get();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, getExecutor());
+    }
+    
+    private <T> CompletableFuture<T> orElse(CompletableFuture<T> future, T fallback) {
+        if (!fallbackOnError)
+            return future;
+        return future.exceptionally(throwable -> {
+            (throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable).printStackTrace();
+            return fallback;
+        });
+    }
+    
+    private <T> T request(String name, URL url, StreamReader<T> reader) throws IOException, InterruptedException {
+        return request(name, url, null, reader);
+    }
+    
+    private <T> T request(String name, URL url, String json, StreamReader<T> reader) throws IOException, InterruptedException {
+        return request(name, url, json, reader, null, null, 0);
+    }
+    
+    /**
+     * Sends the validator of the value in the cache as If-None-Match or If-Modified-Since, and reuses the value if
+     * the response is 304 or carries the same validator, otherwise reads the response and caches the value with
+     * the validator.
+     */
+    private <T> T request(String name, URL url, String json, StreamReader<T> reader, ResponseCache cache, ResponseCache.Endpoint endpoint, int id) throws IOException, InterruptedException {
+        Semaphore permits = permits(url);
+        permits.acquire();
+        ClientMetrics metrics = this.metrics;
+        boolean measured = metrics != ClientMetrics.NONE;
+        long start = 0, readStart = 0;
+        int status = -1;
+        MeteredStream body = null;
+        Throwable error = null;
+        if (measured) {
+            metrics.requestStarted(name);
+            start = System.nanoTime();
+        }
+        Transport.Request request = json == null ? Transport.Request.get(url) : Transport.Request.post(url, json.getBytes(StandardCharsets.UTF_8));
+        String cached = cache == null ? null : cache.getValidator(endpoint, id);
+        if (cached != null)
+            request.setHeader(cached.startsWith("\"") || cached.startsWith("W/") ? "If-None-Match" : "If-Modified-Since", cached);
+        try {
+            Transport.Response response = getTransport().execute(request);
+            status = response.getStatus();
+            if (status == 304 && cached != null) {
+                response.close();
+                T revalidated = cache.revalidate(endpoint, id, cached);
+                if (revalidated != null)
+                    return revalidated;
+                // Evicted since the request was sent, request the whole response
+                response = getTransport().execute(Transport.Request.get(url));
+                status = response.getStatus();
+            }
+            try (Transport.Response success = response.ensureSuccess()) {
+                String validator = cache == null ? null : success.getHeader("ETag") != null ? success.getHeader("ETag") : success.getHeader("Last-Modified");
+                if (validator != null) {
+                    T revalidated = cache.revalidate(endpoint, id, validator);
+                    if (revalidated != null)
+                        return revalidated;
+                }
+                InputStream stream = success.getBody();
+                if (measured) {
+                    stream = body = new MeteredStream(stream);
+                    readStart = System.nanoTime();
+                }
+                T value = reader.read(success, stream);
+                if (measured)
+                    body.readNanos = System.nanoTime() - readStart - body.waitNanos;
+                if (validator != null)
+                    cache.put(endpoint, id, value, validator);
+                return value;
+            }
+        } catch (IOException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            permits.release();
+            if (measured) {
+                long deserialization = body == null ? 0 : body.readNanos;
+                metrics.requestCompleted(name, status, System.nanoTime() - start - deserialization, deserialization, body == null ? 0 : body.bytes, error);
+            }
+        }
+    }
+    
+    private <T> JsonArrayIterator<T> iterate(String name, URL url, Class<T> type) throws IOException {
+        Semaphore permits = permits(url);
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        ClientMetrics metrics = this.metrics;
+        boolean measured = metrics != ClientMetrics.NONE;
+        long start = 0;
+        int status = -1;
+        if (measured) {
+            metrics.requestStarted(name);
+            start = System.nanoTime();
+        }
+        try {
+            Transport.Response response = getTransport().execute(Transport.Request.get(url));
+            status = response.getStatus();
+            response.ensureSuccess();
+            if (!measured)
+                return new JsonArrayIterator<>(getGson(), response.getBody(), type, () -> {
+                    try {
+                        response.close();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            MeteredStream body = new MeteredStream(response.getBody());
+            int success = status;
+            long headersNanos = System.nanoTime() - start;
+            return new JsonArrayIterator<>(getGson(), body, type, () -> {
+                long closeStart = System.nanoTime();
+                try {
+                    response.close();
+                } finally {
+                    permits.release();
+                    metrics.requestCompleted(name, success, headersNanos + body.waitNanos + System.nanoTime() - closeStart, -1, body.bytes, null);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            if (measured)
+                metrics.requestCompleted(name, status, System.nanoTime() - start, 0, 0, e);
+            throw e;
+        }
+    }
+    
+    private static <T> List<T> readArray(Gson gson, InputStream stream, Class<T> type) throws IOException {
+        List<T> list = new ArrayList<>();
+        try (JsonArrayIterator<T> iterator = new JsonArrayIterator<>(gson, stream, type, null)) {
+            iterator.forEachRemaining(list::add);
+        }
+        return list;
+    }
+    
+    private Semaphore permits(URL url) {
+        return hostPermits.computeIfAbsent(url.getHost(), host -> new Semaphore(maxRequestsPerHost));
+    }
+    
+    /**
+     * Counts the bytes read and the time waiting for them.
+     */
+    private static class MeteredStream extends FilterInputStream {
+        long bytes;
+        long waitNanos;
+        long readNanos;
+        
+        MeteredStream(InputStream in) {
+            super(in);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int read = super.read();
+            waitNanos += System.nanoTime() - start;
+            if (read != -1)
+                bytes++;
+            return read;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int read = super.read(b, off, len);
+            waitNanos += System.nanoTime() - start;
+            if (read > 0)
+                bytes += read;
+            return read;
+        }
+    }
+    
+    private static class FingerprintResponse {
+        List<FingerprintMatch> exactMatches;
+    }
+    
+    private interface Request<T> {
+        T get() throws Exception;
+    }
+    
+    private static StreamReader<Path> toFile(Path file) {
+        return new StreamReader<Path>() {
+            @Override
+            public Path read(InputStream stream) throws IOException {
+                return InternetUtils.copyStream(stream, StandardCharsets.UTF_8, file);
+            }
+            
+            @Override
+            public Path read(Transport.Response response, InputStream stream) throws IOException {
+                return InternetUtils.copyStream(stream, InternetUtils.getCharset(response), file);
+            }
+        };
+    }
+    
+    private interface StreamReader<T> {
+        T read(InputStream stream) throws IOException;
+        
+        /**
+         * @param stream the body, metered if measured
+         */
+        default T read(Transport.Response response, InputStream stream) throws IOException {
+            return read(stream);
+        }
+    }
+    
+    private static class DefaultExecutor {
+        static final int THREADS = 32;
+        private static Executor executor;
+        
+        static synchronized Executor get() {
+            if (executor == null)
+                executor = create();
+            return executor;
+        }
+        
+        private static Executor create() {
+            try {
+                // Virtual threads are only available since Java 21
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException ignored) {
+            }
+            AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "CurseMetaAPI-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFile;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFilesBulk;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resolves the dependencies of the addons breadth-first, every level of the graph is fetched with one
+ * {@link CurseMetaClient#getAddons(int...)} and one {@link CurseMetaClient#getAddonFilesBulk(int...)}.
+ * <p>
+ * The file of an addon is the newest file for the game version out of {@link Addon#gameVersionLatestFiles} and
+ * {@link Addon#latestFiles}, the files of the addon are only listed if neither has one or if the api answers the file
+ * as not found.
+ */
+public class DependencyResolver {
+    public static final int EMBEDDED_LIBRARY = 1;
+    public static final int OPTIONAL = 2;
+    public static final int REQUIRED = 3;
+    public static final int TOOL = 4;
+    public static final int INCOMPATIBLE = 5;
+    public static final int INCLUDE = 6;
+    private final CurseMetaClient client;
+    private String gameVersion;
+    private int maxReleaseType;
+    private int[] dependencyTypes;
+    
+    private DependencyResolver(CurseMetaClient client) {
+        this.client = client;
+        this.maxReleaseType = 3;
+        this.dependencyTypes = new int[]{REQUIRED};
+    }
+    
+    /**
+     * @return the resolver using {@link CurseMetaAPI#getClient()}
+     */
+    public static DependencyResolver create() {
+        return create(CurseMetaAPI.getClient());
+    }
+    
+    public static DependencyResolver create(CurseMetaClient client) {
+        return new DependencyResolver(Objects.requireNonNull(client));
+    }
+    
+    public String getGameVersion() {
+        return gameVersion;
+    }
+    
+    /**
+     * @param gameVersion the game version the files must support, such as 1.12.2, null for the default file of the addons
+     */
+    public DependencyResolver setGameVersion(String gameVersion) {
+        this.gameVersion = gameVersion;
+        return this;
+    }
+    
+    public int getMaxReleaseType() {
+        return maxReleaseType;
+    }
+    
+    /**
+     * @param maxReleaseType 1 for releases, 2 for betas, 3 for alphas, defaults to 3
+     */
+    public DependencyResolver setMaxReleaseType(int maxReleaseType) {
+        this.maxReleaseType = maxReleaseType;
+        return this;
+    }
+    
+    public int[] getDependencyTypes() {
+        return dependencyTypes.clone();
+    }
+    
+    /**
+     * @param dependencyTypes the types of the dependencies followed, defaults to {@link #REQUIRED}
+     */
+    public DependencyResolver setDependencyTypes(int... dependencyTypes) {
+        this.dependencyTypes = dependencyTypes.clone();
+        return this;
+    }
+    
+    /**
+     * @param addonIds the addon ids of the roots
+     * @return the future of the graph, addons failed to be fetched are unresolved
+     */
+    public CompletableFuture<Graph> resolve(int... addonIds) {
+        return resolve(addonIds, new int[0], new int[0]);
+    }
+    
+    /**
+     * Resolves the roots with the files pinned, such as the files of a modpack. Dependencies on the pinned
+     * addons use the pinned files.
+     *
+     * @param addons  the addon ids of the roots
+     * @param fileIds the file ids of the roots
+     * @return the future of the graph, addons failed to be fetched are unresolved
+     * @throws IllegalArgumentException if addons' and fileIds' size is the not same
+     */
+    public CompletableFuture<Graph> resolve(int[] addons, int[] fileIds) {
+        if (addons.length != fileIds.length)
+            throw new IllegalArgumentException("addons and fileIds are not the same size: " + addons.length + " != " + fileIds.length);
+        return resolve(addons, addons, fileIds);
+    }
+    
+    private CompletableFuture<Graph> resolve(int[] roots, int[] pinnedAddons, int[] pinnedFileIds) {
+        Walk walk = new Walk(pinnedAddons, pinnedFileIds);
+        for(int root : roots)
+            walk.visited.add(root);
+        int[] frontier = walk.visited.toArray();
+        return walk.level(frontier, 0).thenApply(v -> walk.toGraph(frontier));
+    }
+    
+    private boolean isFollowed(int dependencyType) {
+        for(int type : dependencyTypes)
+            if (type == dependencyType)
+                return true;
+        return false;
+    }
+    
+    private boolean isCompatible(List<String> gameVersions, int releaseType) {
+        return releaseType <= maxReleaseType && (gameVersion == null || gameVersions != null && gameVersions.contains(gameVersion));
+    }
+    
+    /**
+     * @return the newest file id of the addon for the game version, 0 if the addon does not tell
+     */
+    private int selectFileId(Addon addon) {
+        int fileId = 0;
+        if (gameVersion != null && addon.gameVersionLatestFiles != null)
+            for(CurseMetaAPI.Addon.AddonGameVersionFiles files : addon.gameVersionLatestFiles)
+                if (gameVersion.equals(files.gameVersion) && files.fileType <= maxReleaseType)
+                    fileId = Math.max(fileId, files.projectFileId);
+        if (addon.latestFiles != null)
+            for(CurseMetaAPI.Addon.AddonLatestFiles file : addon.latestFiles)
+                if (isCompatible(file.gameVersion, file.releaseType))
+                    fileId = Math.max(fileId, file.id);
+        // The latest release is allowed by every release type
+        if (fileId == 0 && gameVersion == null)
+            fileId = addon.latestReleaseFileId;
+        return fileId;
+    }
+    
+    /**
+     * @param fileId the file id pinned, 0 for the newest file compatible
+     */
+    private AddonFile selectFile(List<AddonFile> files, int fileId) {
+        if (fileId > 0) {
+            for(AddonFile file : files)
+                if (file.fileId == fileId)
+                    return file;
+            return null;
+        }
+        AddonFile newest = null;
+        for(AddonFile file : files)
+            if (isCompatible(file.gameVersion, file.releaseType) && (newest == null || file.fileId > newest.fileId))
+                newest = file;
+        return newest;
+    }
+    
+    /**
+     * The state of one resolution, only touched by one level at a time. The addon ids are not boxed until the graph
+     * is built.
+     */
+    private class Walk {
+        private final IntSet pinned = new IntSet();
+        private final int[] pinnedFileIds;
+        private final IntSet visited = new IntSet();
+        private final List<Node> nodes = new ArrayList<>();
+        private final IntSet unresolved = new IntSet();
+        
+        Walk(int[] pinnedAddons, int[] pinnedFileIds) {
+            this.pinnedFileIds = new int[pinnedAddons.length];
+            for(int i = 0; i < pinnedAddons.length; i++) {
+                pinned.add(pinnedAddons[i]);
+                this.pinnedFileIds[pinned.indexOf(pinnedAddons[i])] = pinnedFileIds[i];
+            }
+        }
+        
+        CompletableFuture<Void> level(int[] frontier, int depth) {
+            if (frontier.length == 0)
+                return CompletableFuture.completedFuture(null);
+            return client.getAddons(frontier).thenCompose(addons -> {
+                IntObjectMap<Addon> byId = new IntObjectMap<>(addons.size());
+                for(Addon addon : addons)
+                    byId.put(addon.id, addon);
+                int[] fileIds = new int[frontier.length];
+                IntSet selected = new IntSet(frontier.length);
+                @SuppressWarnings("unchecked")
+                CompletableFuture<AddonFile>[] listed = new CompletableFuture[frontier.length];
+                List<CompletableFuture<?>> futures = new ArrayList<>();
+                for(int i = 0; i < frontier.length; i++) {
+                    Addon addon = byId.get(frontier[i]);
+                    if (addon == null)
+                        continue;
+                    int pinnedIndex = pinned.indexOf(frontier[i]);
+                    fileIds[i] = pinnedIndex >= 0 ? pinnedFileIds[pinnedIndex] : selectFileId(addon);
+                    if (fileIds[i] > 0)
+                        selected.add(fileIds[i]);
+                    else
+                        futures.add(listed[i] = list(frontier[i], 0));
+                }
+                CompletableFuture<AddonFilesBulk> bulk = client.getAddonFilesBulk(selected.toArray());
+                futures.add(bulk);
+                return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenCompose(v -> {
+                    // The files the api answers as not found are looked up in the files of the addon
+                    IntSet notFound = new IntSet();
+                    for(int fileId : bulk.join().getMissingFileIds())
+                        notFound.add(fileId);
+                    List<CompletableFuture<?>> fallbacks = new ArrayList<>();
+                    for(int i = 0; i < frontier.length; i++)
+                        if (fileIds[i] > 0 && notFound.contains(fileIds[i]))
+                            fallbacks.add(listed[i] = list(frontier[i], pinned.indexOf(frontier[i]) >= 0 ? fileIds[i] : 0));
+                    return CompletableFuture.allOf(fallbacks.toArray(new CompletableFuture[0]));
+                }).thenCompose(v -> {
+                    IntSet next = new IntSet();
+                    for(int i = 0; i < frontier.length; i++) {
+                        int addonId = frontier[i];
+                        AddonFile file = listed[i] != null ? listed[i].join() : fileIds[i] > 0 ? bulk.join().getFile(fileIds[i]) : null;
+                        if (file == null) {
+                            unresolved.add(addonId);
+                            continue;
+                        }
+                        IntSet dependencies = new IntSet();
+                        if (file.dependencies != null)
+                            for(AddonFile.FileDependency dependency : file.dependencies)
+                                if (isFollowed(dependency.type) && dependency.addonId != addonId && dependencies.add(dependency.addonId) && visited.add(dependency.addonId))
+                                    next.add(dependency.addonId);
+                        List<Integer> boxed = new ArrayList<>(dependencies.size());
+                        for(int dependency : dependencies.toArray())
+                            boxed.add(dependency);
+                        nodes.add(new Node(byId.get(addonId), file, depth, boxed));
+                    }
+                    return level(next.toArray(), depth + 1);
+                });
+            });
+        }
+        
+        private CompletableFuture<AddonFile> list(int addonId, int fileId) {
+            return client.getAddonFiles(addonId).thenApply(files -> selectFile(files, fileId));
+        }
+        
+        Graph toGraph(int[] roots) {
+            List<Integer> rootIds = new ArrayList<>(roots.length);
+            for(int root : roots)
+                rootIds.add(root);
+            List<Integer> unresolvedIds = new ArrayList<>(unresolved.size());
+            for(int addonId : unresolved.toArray())
+                unresolvedIds.add(addonId);
+            return new Graph(rootIds, nodes, unresolvedIds);
+        }
+    }
+    
+    public static class Node {
+        private final Addon addon;
+        private final AddonFile file;
+        private final int depth;
+        private final List<Integer> dependencies;
+        
+        Node(Addon addon, AddonFile file, int depth, List<Integer> dependencies) {
+            this.addon = addon;
+            this.file = file;
+            this.depth = depth;
+            this.dependencies = Collections.unmodifiableList(dependencies);
+        }
+        
+        public Addon getAddon() {
+            return addon;
+        }
+        
+        public AddonFile getFile() {
+            return file;
+        }
+        
+        /**
+         * @return the distance from the nearest root, 0 for the roots
+         */
+        public int getDepth() {
+            return depth;
+        }
+        
+        /**
+         * @return the addon ids of the dependencies followed, including the unresolved ones
+         */
+        public List<Integer> getDependencies() {
+            return dependencies;
+        }
+    }
+    
+    public static class Graph {
+        private final List<Integer> roots;
+        private final List<Node> nodes;
+        private final IntObjectMap<Node> byId;
+        private final List<Integer> unresolved;
+        private final List<Node> installOrder = new ArrayList<>();
+        private final List<List<Integer>> cycles = new ArrayList<>();
+        private volatile Map<Integer, Node> nodesMap;
+        
+        Graph(List<Integer> roots, List<Node> nodes, List<Integer> unresolved) {
+            this.roots = Collections.unmodifiableList(roots);
+            this.nodes = nodes;
+            this.byId = new IntObjectMap<>(nodes.size());
+            for(Node node : nodes)
+                byId.put(node.addon.id, node);
+            this.unresolved = Collections.unmodifiableList(unresolved);
+            IntSet entered = new IntSet(nodes.size());
+            IntSet done = new IntSet(nodes.size());
+            int[] path = new int[nodes.size()];
+            for(Node node : nodes)
+                visit(node.addon.id, entered, done, path, 0);
+        }
+        
+        /**
+         * Depth first, the dependencies are added to the install order before the addon, a dependency entered but
+         * not done is on the path and closes a cycle.
+         */
+        private void visit(int addonId, IntSet entered, IntSet done, int[] path, int depth) {
+            Node node = byId.get(addonId);
+            if (node == null || !entered.add(addonId))
+                return;
+            path[depth] = addonId;
+            for(int dependency : node.dependencies) {
+                if (entered.contains(dependency) && !done.contains(dependency)) {
+                    int from = 0;
+                    while (path[from] != dependency)
+                        from++;
+                    List<Integer> cycle = new ArrayList<>(depth + 1 - from);
+                    for(int i = from; i <= depth; i++)
+                        cycle.add(path[i]);
+                    cycles.add(Collections.unmodifiableList(cycle));
+                } else {
+                    visit(dependency, entered, done, path, depth + 1);
+                }
+            }
+            done.add(addonId);
+            installOrder.add(node);
+        }
+        
+        public List<Integer> getRoots() {
+            return roots;
+        }
+        
+        /**
+         * @param addonId the addon id
+         * @return the resolved node of the addon, null if not resolved
+         */
+        public Node getNode(int addonId) {
+            return byId.get(addonId);
+        }
+        
+        /**
+         * @return the resolved nodes keyed by the addon id, in the breadth-first order, boxed on the first call
+         * @see #getNode(int)
+         */
+        public Map<Integer, Node> getNodes() {
+            Map<Integer, Node> map = nodesMap;
+            if (map == null) {
+                map = new LinkedHashMap<>(nodes.size() * 2);
+                for(Node node : nodes)
+                    map.put(node.addon.id, node);
+                nodesMap = map = Collections.unmodifiableMap(map);
+            }
+            return map;
+        }
+        
+        /**
+         * @return the addon ids that are not found, failed to be fetched or have no file for the game version
+         */
+        public List<Integer> getUnresolved() {
+            return unresolved;
+        }
+        
+        /**
+         * @return the nodes with the dependencies before the addons depending on them, except in cycles
+         */
+        public List<Node> getInstallOrder() {
+            return Collections.unmodifiableList(installOrder);
+        }
+        
+        /**
+         * @return the cycles found, each is the addon ids from the first to the last, which depends on the first
+         */
+        public List<List<Integer>> getCycles() {
+            return Collections.unmodifiableList(cycles);
+        }
+    }
+}
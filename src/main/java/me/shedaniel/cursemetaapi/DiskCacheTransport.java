@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Transport} keeping the json bodies of successful GET requests in a directory, so they survive restarts.
+ * Requests with a Range header, responses that are not json and bodies above the max entry size, such as the files
+ * downloaded, go through without being kept.
+ * <p>
+ * Entries younger than the max age are served from the disk without a request, older entries are revalidated
+ * with If-None-Match and If-Modified-Since and served from the disk if the server answers 304. The responses
+ * served from the disk carry the {@value #CACHE_HEADER} header, either {@code hit} or {@code revalidated}.
+ * <p>
+ * The least recently used entries are deleted once the directory exceeds the max size. A body failing to be written
+ * to the directory fails the request with the {@link IOException}.
+ */
+public class DiskCacheTransport implements Transport {
+    public static final String CACHE_HEADER = "X-CurseMetaAPI-Cache";
+    private static final String BODY = ".body";
+    private static final String META = ".meta";
+    private final Path directory;
+    private Transport transport;
+    private long maxAge;
+    private long maxSize;
+    private long maxEntrySize;
+    private final AtomicLong size = new AtomicLong(-1);
+    
+    private DiskCacheTransport(Path directory) {
+        this.directory = directory;
+        this.maxAge = TimeUnit.MINUTES.toMillis(5);
+        this.maxSize = 256L * 1024 * 1024;
+        this.maxEntrySize = 8L * 1024 * 1024;
+    }
+    
+    /**
+     * @param directory the directory of the cache, created if missing
+     */
+    public static DiskCacheTransport create(Path directory) {
+        return new DiskCacheTransport(directory);
+    }
+    
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * @return the transport sending the requests, defaults to {@link CurseMetaAPI.InternetUtils#getTransport()}
+     */
+    public Transport getTransport() {
+        return transport == null ? CurseMetaAPI.InternetUtils.getTransport() : transport;
+    }
+    
+    public DiskCacheTransport setTransport(Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+    
+    public long getMaxAge(TimeUnit unit) {
+        return unit.convert(maxAge, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * @param maxAge the age below which entries are served without revalidation, defaults to 5 minutes
+     * @param unit   the unit of the max age
+     */
+    public DiskCacheTransport setMaxAge(long maxAge, TimeUnit unit) {
+        this.maxAge = unit.toMillis(maxAge);
+        return this;
+    }
+    
+    public long getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * @param maxSize the size in bytes of the directory above which entries are deleted, defaults to 256 MiB
+     */
+    public DiskCacheTransport setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+    
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+    
+    /**
+     * @param maxEntrySize the size in bytes of the largest body kept, larger bodies go through, defaults to 8 MiB
+     */
+    public DiskCacheTransport setMaxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+        return this;
+    }
+    
+    @Override
+    public Response execute(Request request) throws IOException {
+        if (!request.getMethod().equals("GET") || request.getHeaders().keySet().stream().anyMatch("Range"::equalsIgnoreCase))
+            return getTransport().execute(request);
+        String key = key(request.getUrl().toString());
+        Path body = directory.resolve(key + BODY);
+        Properties meta = readMeta(directory.resolve(key + META));
+        long storedAt = meta == null || !request.getUrl().toString().equals(meta.getProperty("url")) ? -1 : storedAt(meta);
+        if (storedAt >= 0 && Files.isRegularFile(body)) {
+            if (System.currentTimeMillis() - storedAt < maxAge) {
+                Response hit = serve(body, meta, "hit");
+                if (hit != null)
+                    return hit;
+            } else {
+                Request revalidation = request.copy();
+                if (meta.getProperty("etag") != null)
+                    revalidation.setHeader("If-None-Match", meta.getProperty("etag"));
+                if (meta.getProperty("lastModified") != null)
+                    revalidation.setHeader("If-Modified-Since", meta.getProperty("lastModified"));
+                Response response = getTransport().execute(revalidation);
+                if (response.getStatus() != 304)
+                    return store(key, request, response);
+                response.close();
+                meta.setProperty("storedAt", String.valueOf(System.currentTimeMillis()));
+                writeMeta(key, meta);
+                Response revalidated = serve(body, meta, "revalidated");
+                if (revalidated != null)
+                    return revalidated;
+            }
+        }
+        return store(key, request, getTransport().execute(request));
+    }
+    
+    /**
+     * Deletes every entry of the cache.
+     */
+    public synchronized void clear() throws IOException {
+        for(Path path : list())
+            Files.deleteIfExists(path);
+        size.set(0);
+    }
+    
+    /**
+     * Deletes the least recently used entries until the directory is below 90% of the max size.
+     */
+    public synchronized void compact() throws IOException {
+        List<Path> bodies = new ArrayList<>();
+        long total = 0;
+        for(Path path : list()) {
+            total += Files.size(path);
+            if (path.getFileName().toString().endsWith(BODY))
+                bodies.add(path);
+        }
+        if (total > maxSize) {
+            Map<Path, FileTime> used = new HashMap<>();
+            for(Path path : bodies)
+                used.put(path, Files.getLastModifiedTime(path));
+            bodies.sort(Comparator.comparing(used::get));
+            for(Path path : bodies) {
+                if (total <= maxSize * 0.9)
+                    break;
+                Path meta = path.resolveSibling(path.getFileName().toString().replace(BODY, META));
+                total -= sizeOf(path) + sizeOf(meta);
+                Files.deleteIfExists(path);
+                Files.deleteIfExists(meta);
+            }
+        }
+        size.set(total);
+    }
+    
+    /**
+     * @return the response of the body, null if the body was deleted since, such as by a concurrent compaction
+     */
+    private Response serve(Path body, Properties meta, String cache) throws IOException {
+        InputStream in;
+        try {
+            in = Files.newInputStream(body);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        try {
+            // The modified time of the body is the last use of the entry
+            Files.setLastModifiedTime(body, FileTime.fromMillis(System.currentTimeMillis()));
+            headers.put("Content-Length", String.valueOf(Files.size(body)));
+        } catch (NoSuchFileException e) {
+            in.close();
+            return null;
+        }
+        headers.put(CACHE_HEADER, cache);
+        if (meta.getProperty("etag") != null)
+            headers.put("ETag", meta.getProperty("etag"));
+        if (meta.getProperty("lastModified") != null)
+            headers.put("Last-Modified", meta.getProperty("lastModified"));
+        if (meta.getProperty("contentType") != null)
+            headers.put("Content-Type", meta.getProperty("contentType"));
+        return new CachedResponse(200, headers, in);
+    }
+    
+    /**
+     * @return the milliseconds since the epoch the entry was stored or revalidated at, -1 if the meta is corrupt
+     */
+    private static long storedAt(Properties meta) {
+        try {
+            return Long.parseLong(meta.getProperty("storedAt", "-1"));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Streams the json body into the directory and serves it from there. A body found larger than the max entry size
+     * while streaming is served from what was read, then from the rest of the response.
+     */
+    private Response store(String key, Request request, Response response) throws IOException {
+        if (response.getStatus() != 200 || !isJson(response.getHeader("Content-Type")) || CurseMetaAPI.InternetUtils.getContentLength(response) > maxEntrySize)
+            return response;
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        boolean kept = false;
+        try {
+            long length = 0;
+            InputStream in = response.getBody();
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while (length <= maxEntrySize && (read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    length += read;
+                }
+            }
+            if (length > maxEntrySize) {
+                kept = true;
+                return new SpilledResponse(response, Files.newInputStream(temp, StandardOpenOption.DELETE_ON_CLOSE));
+            }
+            response.close();
+            Properties meta = new Properties();
+            meta.setProperty("url", request.getUrl().toString());
+            meta.setProperty("storedAt", String.valueOf(System.currentTimeMillis()));
+            if (response.getHeader("ETag") != null)
+                meta.setProperty("etag", response.getHeader("ETag"));
+            if (response.getHeader("Last-Modified") != null)
+                meta.setProperty("lastModified", response.getHeader("Last-Modified"));
+            meta.setProperty("contentType", response.getHeader("Content-Type"));
+            Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for(String name : new String[]{"ETag", "Last-Modified", "Content-Type"})
+                if (response.getHeader(name) != null)
+                    headers.put(name, response.getHeader(name));
+            headers.put("Content-Length", String.valueOf(length));
+            Path body = directory.resolve(key + BODY);
+            InputStream stored;
+            // Moved and opened under the lock of compact(), so the body is not deleted before it is opened
+            synchronized (this) {
+                long previous = sizeOf(body) + sizeOf(directory.resolve(key + META));
+                CurseMetaAPI.InternetUtils.move(temp, body);
+                writeMeta(key, meta);
+                stored = Files.newInputStream(body);
+                if (size.get() >= 0)
+                    size.addAndGet(sizeOf(body) + sizeOf(directory.resolve(key + META)) - previous);
+            }
+            if (size.get() < 0 || size.get() > maxSize)
+                compact();
+            return new CachedResponse(200, headers, stored);
+        } finally {
+            if (!kept)
+                Files.deleteIfExists(temp);
+        }
+    }
+    
+    private static boolean isJson(String contentType) {
+        if (contentType == null)
+            return false;
+        String mediaType = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return mediaType.equals("application/json") || mediaType.endsWith("+json");
+    }
+    
+    private List<Path> list() throws IOException {
+        if (!Files.isDirectory(directory))
+            return Collections.emptyList();
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.filter(path -> path.getFileName().toString().endsWith(BODY) || path.getFileName().toString().endsWith(META)).forEach(paths::add);
+        }
+        return paths;
+    }
+    
+    private static Properties readMeta(Path path) {
+        if (!Files.isRegularFile(path))
+            return null;
+        Properties meta = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            meta.load(reader);
+            return meta;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private void writeMeta(String key, Properties meta) throws IOException {
+        StringWriter writer = new StringWriter();
+        meta.store(writer, null);
+        write(directory.resolve(key + META), writer.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static void write(Path path, byte[] bytes) throws IOException {
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bytes);
+            CurseMetaAPI.InternetUtils.move(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    private static long sizeOf(Path path) {
+        try {
+            return Files.isRegularFile(path) ? Files.size(path) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+    
+    private static String key(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for(byte b : digest)
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * A response too large to be kept, the part already read is served from a file deleted once closed.
+     */
+    private static class SpilledResponse implements Response {
+        private final Response response;
+        private final InputStream read;
+        private final InputStream body;
+        
+        SpilledResponse(Response response, InputStream read) {
+            this.response = response;
+            this.read = read;
+            this.body = new SequenceInputStream(read, response.getBody());
+        }
+        
+        @Override
+        public int getStatus() {
+            return response.getStatus();
+        }
+        
+        @Override
+        public String getHeader(String name) {
+            return response.getHeader(name);
+        }
+        
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                read.close();
+            } finally {
+                response.close();
+            }
+        }
+    }
+    
+    private static class CachedResponse implements Response {
+        private final int status;
+        private final Map<String, String> headers;
+        private final InputStream body;
+        
+        CachedResponse(int status, Map<String, String> headers, InputStream body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+        
+        @Override
+        public int getStatus() {
+            return status;
+        }
+        
+        @Override
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+        
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+}
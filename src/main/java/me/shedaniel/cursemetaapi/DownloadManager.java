@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFile;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.InternetUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads the files at the same time, up to the maximum of concurrent downloads and the maximum of bytes per second shared by all downloads.
+ * <p>
+ * The body is written to {@code <file>.part} and moved to the file once verified, a part left by a failed
+ * download is resumed with a range request. A part is only resumed if the download is verified by length or
+ * fingerprint, or if the ETag of the part was kept in {@code <file>.part.etag} to send as If-Range, any other part
+ * is downloaded again from the start.
+ * <p>
+ * Downloads to the same path while one is running share the running download.
+ */
+public class DownloadManager {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private Transport transport;
+    private Executor executor;
+    private int maxConcurrentDownloads;
+    private long maxBytesPerSecond;
+    private Listener listener;
+    private final Queue<Runnable> queued = new ArrayDeque<>();
+    private final Map<Path, CompletableFuture<Path>> downloading = new HashMap<>();
+    private int running;
+    private long nextFreeNanos;
+    
+    private DownloadManager() {
+        this.maxConcurrentDownloads = 8;
+    }
+    
+    public static DownloadManager create() {
+        return new DownloadManager();
+    }
+    
+    /**
+     * @return the transport downloading the files, defaults to {@link InternetUtils#getTransport()}
+     */
+    public Transport getTransport() {
+        return transport == null ? InternetUtils.getTransport() : transport;
+    }
+    
+    public DownloadManager setTransport(Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+    
+    /**
+     * @return the executor running the downloads, defaults to daemon threads of this manager, up to the maximum of
+     * concurrent downloads, so that waiting on a download from the executor of the client does not starve it
+     */
+    public synchronized Executor getExecutor() {
+        if (executor == null) {
+            AtomicInteger count = new AtomicInteger();
+            executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "CurseMetaAPI-Download-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+    
+    public synchronized DownloadManager setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+    
+    public int getMaxConcurrentDownloads() {
+        return maxConcurrentDownloads;
+    }
+    
+    /**
+     * @param maxConcurrentDownloads the maximum of downloads running at the same time, the others wait in order, defaults to 8
+     */
+    public DownloadManager setMaxConcurrentDownloads(int maxConcurrentDownloads) {
+        if (maxConcurrentDownloads < 1)
+            throw new IllegalArgumentException("maxConcurrentDownloads must be positive: " + maxConcurrentDownloads);
+        synchronized (queued) {
+            this.maxConcurrentDownloads = maxConcurrentDownloads;
+        }
+        dispatch();
+        return this;
+    }
+    
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+    
+    /**
+     * @param maxBytesPerSecond the bandwidth shared by all downloads, 0 for unlimited, defaults to 0
+     */
+    public DownloadManager setMaxBytesPerSecond(long maxBytesPerSecond) {
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        return this;
+    }
+    
+    /**
+     * @param listener the listener notified of the progress, called on the thread of the download
+     */
+    public DownloadManager setListener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+    
+    /**
+     * Downloads the file into the directory with its file name, verified against {@link AddonFile#fileLength} and
+     * {@link AddonFile#packageFingerprint}. The download is skipped if the file is already there and verified.
+     * <p>
+     * Only the last name of {@link AddonFile#fileName} is used, a file name resolving out of the directory is rejected.
+     *
+     * @param file      the file
+     * @param directory the directory
+     * @return the future of the path downloaded, completes exceptionally if error
+     */
+    public CompletableFuture<Path> download(AddonFile file, Path directory) {
+        try {
+            return download(new URL(file.downloadUrl), resolve(directory, file.fileName), file.fileLength, file.packageFingerprint);
+        } catch (IOException | InvalidPathException e) {
+            CompletableFuture<Path> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+    
+    /**
+     * @param files     the files
+     * @param directory the directory
+     * @return the future completing once every file is downloaded, completes exceptionally if any download failed
+     * @see #download(AddonFile, Path)
+     */
+    public CompletableFuture<List<Path>> downloadAll(Collection<AddonFile> files, Path directory) {
+        List<CompletableFuture<Path>> downloads = new ArrayList<>();
+        for(AddonFile file : files)
+            downloads.add(download(file, directory));
+        return CompletableFuture.allOf(downloads.toArray(new CompletableFuture[0])).thenApply(v -> {
+            List<Path> paths = new ArrayList<>();
+            for(CompletableFuture<Path> download : downloads)
+                paths.add(download.join());
+            return paths;
+        });
+    }
+    
+    /**
+     * @param url         the url
+     * @param target      the path downloaded to
+     * @param length      the expected length, 0 if not verified
+     * @param fingerprint the expected {@link Fingerprint}, 0 if not verified
+     * @return the future of the target, the future of the running download if the target is already downloading,
+     * completes exceptionally if error
+     */
+    public CompletableFuture<Path> download(URL url, Path target, long length, long fingerprint) {
+        Path key = target.toAbsolutePath().normalize();
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        synchronized (queued) {
+            CompletableFuture<Path> running = downloading.get(key);
+            if (running != null)
+                return running;
+            downloading.put(key, future);
+            future.whenComplete((path, throwable) -> {
+                synchronized (queued) {
+                    downloading.remove(key, future);
+                }
+            });
+            queued.add(() -> {
+                try {
+                    future.complete(run(url, target, length, fingerprint));
+                } catch (Throwable throwable) {
+                    future.completeExceptionally(throwable);
+                }
+            });
+        }
+        dispatch();
+        return future;
+    }
+    
+    private void dispatch() {
+        while (true) {
+            Runnable download;
+            synchronized (queued) {
+                if (running >= maxConcurrentDownloads || (download = queued.poll()) == null)
+                    return;
+                running++;
+            }
+            try {
+                getExecutor().execute(() -> {
+                    try {
+                        download.run();
+                    } finally {
+                        synchronized (queued) {
+                            running--;
+                        }
+                        dispatch();
+                    }
+                });
+            } catch (RuntimeException e) {
+                synchronized (queued) {
+                    running--;
+                }
+                throw e;
+            }
+        }
+    }
+    
+    private Path run(URL url, Path target, long length, long fingerprint) throws IOException {
+        if (Files.isRegularFile(target) && fingerprint != 0 && isValid(target, length, fingerprint))
+            return target;
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        Path etag = target.resolveSibling(target.getFileName() + ".part.etag");
+        boolean resumed = transfer(url, target, part, etag, length, fingerprint);
+        if (!isValid(part, length, fingerprint)) {
+            // The part may be left by another version of the file, start over once
+            if (resumed) {
+                Files.delete(part);
+                transfer(url, target, part, etag, length, fingerprint);
+            }
+            if (!isValid(part, length, fingerprint)) {
+                long size = Files.size(part);
+                Files.delete(part);
+                Files.deleteIfExists(etag);
+                throw new IOException("Downloaded file from " + url + " does not match, length " + size + " expected " + length);
+            }
+        }
+        InternetUtils.move(part, target);
+        Files.deleteIfExists(etag);
+        return target;
+    }
+    
+    /**
+     * @param etag the path keeping the strong ETag the part was downloaded with
+     * @return whether the transfer resumed the part
+     */
+    private boolean transfer(URL url, Path target, Path part, Path etag, long length, long fingerprint) throws IOException {
+        long offset = Files.isRegularFile(part) ? Files.size(part) : 0;
+        String validator = offset > 0 && Files.isRegularFile(etag) ? new String(Files.readAllBytes(etag), StandardCharsets.UTF_8) : null;
+        boolean verified = length > 0 || fingerprint != 0;
+        if (offset > 0 && !verified && validator == null)
+            offset = 0;
+        if (offset > 0 && length > 0 && offset >= length)
+            return true;
+        Transport.Request request = Transport.Request.get(url).setHeader("Accept-Encoding", "identity");
+        if (offset > 0) {
+            request.setHeader("Range", "bytes=" + offset + "-");
+            if (validator != null)
+                request.setHeader("If-Range", validator);
+        }
+        try (Transport.Response response = getTransport().execute(request)) {
+            // Without verification the part is complete only if the server reports the same length
+            if (response.getStatus() == 416 && offset > 0 && (verified || ("bytes */" + offset).equals(response.getHeader("Content-Range"))))
+                return true;
+            if (response.getStatus() == 416 && offset > 0) {
+                response.close();
+                Files.delete(part);
+                return transfer(url, target, part, etag, length, fingerprint);
+            }
+            response.ensureSuccess();
+            boolean resumed = offset > 0 && response.getStatus() == 206;
+            if (!resumed) {
+                offset = 0;
+                String strong = response.getHeader("ETag");
+                if (strong != null && !strong.startsWith("W/"))
+                    Files.write(etag, strong.getBytes(StandardCharsets.UTF_8));
+                else
+                    Files.deleteIfExists(etag);
+            }
+            long total = length > 0 ? length : contentLength(response, offset);
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                channel.truncate(offset);
+                channel.position(offset);
+                InputStream body = response.getBody();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long downloaded = offset;
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    throttle(read);
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                    while (bytes.hasRemaining())
+                        channel.write(bytes);
+                    downloaded += read;
+                    if (listener != null)
+                        listener.onProgress(target, downloaded, total);
+                }
+            }
+            return resumed;
+        }
+    }
+    
+    /**
+     * @return the path of the last name of the file name in the directory
+     * @throws IOException if the path is not inside the directory, such as for {@code ..}
+     */
+    private static Path resolve(Path directory, String fileName) throws IOException {
+        Path name = fileName == null ? null : Paths.get(fileName).getFileName();
+        Path base = directory.toAbsolutePath().normalize();
+        Path target = name == null ? null : directory.resolve(name);
+        if (target == null || base.equals(target.toAbsolutePath().normalize()) || !target.toAbsolutePath().normalize().startsWith(base))
+            throw new IOException("Unsafe file name: " + fileName);
+        return target;
+    }
+    
+    private static long contentLength(Transport.Response response, long offset) {
+        try {
+            String contentLength = response.getHeader("Content-Length");
+            return contentLength == null ? -1 : Long.parseLong(contentLength) + (response.getStatus() == 206 ? offset : 0);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private static boolean isValid(Path path, long length, long fingerprint) throws IOException {
+        return (length <= 0 || Files.size(path) == length) && (fingerprint == 0 || Fingerprint.hash(path) == fingerprint);
+    }
+    
+    /**
+     * Reserves the time to read the bytes at the maximum of bytes per second, then waits until that time.
+     */
+    private void throttle(int bytes) throws InterruptedIOException {
+        long maxBytesPerSecond = this.maxBytesPerSecond;
+        if (maxBytesPerSecond <= 0)
+            return;
+        long now = System.nanoTime(), start;
+        synchronized (this) {
+            start = Math.max(now, nextFreeNanos);
+            nextFreeNanos = start + bytes * TimeUnit.SECONDS.toNanos(1) / maxBytesPerSecond;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(start - now);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+    
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param target     the path downloaded to
+         * @param downloaded the bytes downloaded, including the bytes resumed
+         * @param length     the length of the file, -1 if unknown
+         */
+        void onProgress(Path target, long downloaded, long length);
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFile;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory fake of the api for offline tests, answering the addon, files, search, description, changelog and
+ * fingerprint endpoints from fixtures, whatever the base url is.
+ * <p>
+ * The latency and the injected errors are drawn from a seeded random, so a run can be reproduced.
+ */
+public class FakeTransport implements Transport {
+    private static final Pattern ADDON = Pattern.compile("/api/v2/addon/(\\d+)");
+    private static final Pattern ADDON_FILES = Pattern.compile("/api/v2/addon/(\\d+)/files");
+    private static final Pattern ADDON_FILE = Pattern.compile("/api/v2/addon/(\\d+)/file/(\\d+)");
+    private static final Pattern CHANGELOG = Pattern.compile("/api/v2/addon/(\\d+)/file/(\\d+)/changelog");
+    private static final Pattern DESCRIPTION = Pattern.compile("/api/v2/addon/(\\d+)/description");
+    private final Map<Integer, Addon> addons = new ConcurrentHashMap<>();
+    private final Map<Integer, List<AddonFile>> files = new ConcurrentHashMap<>();
+    private final Map<Integer, AddonFile> filesById = new ConcurrentHashMap<>();
+    private final Map<Integer, String> descriptions = new ConcurrentHashMap<>();
+    private final Map<Integer, String> changelogs = new ConcurrentHashMap<>();
+    private final OfflineAddonIndex index = OfflineAddonIndex.create();
+    private final AtomicLong requests = new AtomicLong();
+    private Random random = new Random(0);
+    private long minLatencyNanos;
+    private long maxLatencyNanos;
+    private double errorRate;
+    private int errorStatus = 503;
+    private double failureRate;
+    
+    private FakeTransport() {}
+    
+    public static FakeTransport create() {
+        return new FakeTransport();
+    }
+    
+    public FakeTransport addAddon(Addon addon) {
+        addons.put(addon.id, addon);
+        index.put(addon);
+        return this;
+    }
+    
+    /**
+     * @param json the json of an addon, or the json array of addons such as a recorded search
+     */
+    public FakeTransport addAddons(Reader json) {
+        JsonElement element = new JsonParser().parse(json);
+        if (element.isJsonArray())
+            for(Addon addon : CurseMetaAPI.GSON.fromJson(element, Addon[].class))
+                addAddon(addon);
+        else
+            addAddon(CurseMetaAPI.GSON.fromJson(element, Addon.class));
+        return this;
+    }
+    
+    public FakeTransport addFile(int addonId, AddonFile file) {
+        files.computeIfAbsent(addonId, id -> Collections.synchronizedList(new ArrayList<>())).add(file);
+        filesById.put(file.fileId, file);
+        return this;
+    }
+    
+    /**
+     * @param addonId the addon id
+     * @param json    the json array of files, such as the recorded files of an addon
+     */
+    public FakeTransport addFiles(int addonId, Reader json) {
+        for(AddonFile file : CurseMetaAPI.GSON.fromJson(json, AddonFile[].class))
+            addFile(addonId, file);
+        return this;
+    }
+    
+    public FakeTransport setDescription(int addonId, String html) {
+        descriptions.put(addonId, html);
+        return this;
+    }
+    
+    public FakeTransport setChangelog(int fileId, String html) {
+        changelogs.put(fileId, html);
+        return this;
+    }
+    
+    /**
+     * @param seed the seed of the random drawing the latency and the errors, defaults to 0
+     */
+    public synchronized FakeTransport setSeed(long seed) {
+        this.random = new Random(seed);
+        return this;
+    }
+    
+    /**
+     * @param min  the minimum latency of a response
+     * @param max  the maximum latency of a response, drawn uniformly from the minimum
+     * @param unit the unit
+     */
+    public synchronized FakeTransport setLatency(long min, long max, TimeUnit unit) {
+        this.minLatencyNanos = unit.toNanos(min);
+        this.maxLatencyNanos = Math.max(minLatencyNanos, unit.toNanos(max));
+        return this;
+    }
+    
+    /**
+     * @param errorRate   the part of the requests answered with the status, from 0 to 1
+     * @param errorStatus the status, defaults to 503
+     */
+    public synchronized FakeTransport setErrorRate(double errorRate, int errorStatus) {
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        return this;
+    }
+    
+    /**
+     * @param failureRate the part of the requests failing to be sent with an {@link IOException}, from 0 to 1
+     */
+    public synchronized FakeTransport setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+        return this;
+    }
+    
+    /**
+     * @return the number of requests received
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+    
+    @Override
+    public Response execute(Request request) throws IOException {
+        requests.incrementAndGet();
+        long latency;
+        boolean failure, error;
+        synchronized (this) {
+            // Always three draws, so the errors of a seed do not depend on the latency
+            latency = minLatencyNanos + (long) (random.nextDouble() * (maxLatencyNanos - minLatencyNanos));
+            failure = random.nextDouble() < failureRate;
+            error = random.nextDouble() < errorRate;
+        }
+        if (latency > 0)
+            try {
+                TimeUnit.NANOSECONDS.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        if (failure)
+            throw new IOException("Injected failure: " + request.getUrl());
+        if (error)
+            return new FakeResponse(errorStatus, "text/plain", "Injected error");
+        String body = respond(request.getMethod(), request.getUrl().getPath(), request.getUrl().getQuery(), request.getBody() == null ? null : new String(request.getBody(), StandardCharsets.UTF_8));
+        if (body == null)
+            return new FakeResponse(404, "text/plain", "Not Found");
+        boolean html = CHANGELOG.matcher(request.getUrl().getPath()).matches() || DESCRIPTION.matcher(request.getUrl().getPath()).matches();
+        return new FakeResponse(200, html ? "text/html" : "application/json", body);
+    }
+    
+    private String respond(String method, String path, String query, String body) throws IOException {
+        Matcher matcher;
+        if (method.equals("POST")) {
+            if (path.equals("/api/v2/addon")) {
+                List<Addon> found = new ArrayList<>();
+                for(int id : CurseMetaAPI.GSON.fromJson(body, int[].class))
+                    if (addons.containsKey(id))
+                        found.add(addons.get(id));
+                return CurseMetaAPI.GSON.toJson(found);
+            }
+            if (path.equals("/api/v2/addon/files")) {
+                Map<Integer, List<AddonFile>> found = new LinkedHashMap<>();
+                for(int id : CurseMetaAPI.GSON.fromJson(body, int[].class))
+                    if (filesById.containsKey(id))
+                        found.put(id, Collections.singletonList(filesById.get(id)));
+                return CurseMetaAPI.GSON.toJson(found);
+            }
+            if (path.equals("/api/v2/fingerprint"))
+                return fingerprints(CurseMetaAPI.GSON.fromJson(body, long[].class));
+            return null;
+        }
+        if (path.equals("/api/v2/addon/search"))
+            return CurseMetaAPI.GSON.toJson(index.search(search(query)));
+        if ((matcher = ADDON.matcher(path)).matches())
+            return addons.containsKey(Integer.parseInt(matcher.group(1))) ? CurseMetaAPI.GSON.toJson(addons.get(Integer.parseInt(matcher.group(1)))) : null;
+        if ((matcher = ADDON_FILES.matcher(path)).matches())
+            return addons.containsKey(Integer.parseInt(matcher.group(1))) ? CurseMetaAPI.GSON.toJson(files.getOrDefault(Integer.parseInt(matcher.group(1)), Collections.emptyList())) : null;
+        if ((matcher = ADDON_FILE.matcher(path)).matches())
+            return filesById.containsKey(Integer.parseInt(matcher.group(2))) ? CurseMetaAPI.GSON.toJson(filesById.get(Integer.parseInt(matcher.group(2)))) : null;
+        if ((matcher = CHANGELOG.matcher(path)).matches())
+            return changelogs.get(Integer.parseInt(matcher.group(2)));
+        if ((matcher = DESCRIPTION.matcher(path)).matches())
+            return descriptions.get(Integer.parseInt(matcher.group(1)));
+        return null;
+    }
+    
+    private static MetaSearch search(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query != null)
+            for(String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals > 0)
+                    parameters.put(parameter.substring(0, equals), URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+            }
+        MetaSearch search = MetaSearch.create(Integer.parseInt(parameters.getOrDefault("gameId", "0")))
+                .setPageIndex(Integer.parseInt(parameters.getOrDefault("index", "0")))
+                .setPageSize(Integer.parseInt(parameters.getOrDefault("pageSize", "50")))
+                .setSortDescending(Boolean.parseBoolean(parameters.get("isSortDescending")))
+                .setGameVersion(parameters.get("gameVersion"))
+                .setSearchFilter(parameters.get("searchFilter"));
+        for(MetaSearch.SortMethod sort : MetaSearch.SortMethod.values())
+            if (sort.getName().equals(parameters.get("sort")))
+                search.setSortingMethod(sort);
+        if (parameters.containsKey("sectionId"))
+            search.setSectionId(Integer.parseInt(parameters.get("sectionId")));
+        if (parameters.containsKey("categoryId"))
+            search.setCategoryId(Integer.parseInt(parameters.get("categoryId")));
+        return search;
+    }
+    
+    private String fingerprints(long[] fingerprints) {
+        Set<Long> requested = new HashSet<>();
+        for(long fingerprint : fingerprints)
+            requested.add(fingerprint);
+        JsonArray exactMatches = new JsonArray();
+        Set<Long> matched = new HashSet<>();
+        files.forEach((addonId, list) -> {
+            synchronized (list) {
+                for(AddonFile file : list)
+                    if (requested.contains(file.packageFingerprint) && matched.add(file.packageFingerprint)) {
+                        JsonObject match = new JsonObject();
+                        match.addProperty("id", addonId);
+                        match.add("file", CurseMetaAPI.GSON.toJsonTree(file));
+                        match.add("latestFiles", new JsonArray());
+                        exactMatches.add(match);
+                    }
+            }
+        });
+        JsonObject response = new JsonObject();
+        response.addProperty("isCacheBuilt", true);
+        response.add("exactMatches", exactMatches);
+        JsonArray unmatched = new JsonArray();
+        for(long fingerprint : requested)
+            if (!matched.contains(fingerprint))
+                unmatched.add(fingerprint);
+        response.add("unmatchedFingerprints", unmatched);
+        return CurseMetaAPI.GSON.toJson(response);
+    }
+    
+    private static class FakeResponse implements Response {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+        
+        FakeResponse(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body.getBytes(StandardCharsets.UTF_8);
+        }
+        
+        @Override
+        public int getStatus() {
+            return status;
+        }
+        
+        @Override
+        public String getHeader(String name) {
+            if (name.equalsIgnoreCase("Content-Type"))
+                return contentType;
+            if (name.equalsIgnoreCase("Content-Length"))
+                return String.valueOf(body.length);
+            return null;
+        }
+        
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The fingerprint of the files, the same as {@link CurseMetaAPI.AddonFile#packageFingerprint}.
+ * <p>
+ * It is the 32 bit Murmur2 hash with the seed of 1, skipping the whitespace bytes (tab, line feed, carriage return and space).
+ */
+public final class Fingerprint {
+    private static final int SEED = 1;
+    private static final int M = 0x5bd1e995;
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    private Fingerprint() {}
+    
+    /**
+     * @param bytes the bytes
+     * @return the fingerprint, unsigned
+     */
+    public static long hash(byte[] bytes) {
+        Murmur2 murmur2 = new Murmur2(normalizedLength(bytes, 0, bytes.length));
+        murmur2.update(bytes, 0, bytes.length);
+        return murmur2.finish();
+    }
+    
+    /**
+     * Reads the file twice, first for the length without the whitespaces as the hash is seeded with it.
+     *
+     * @param file the file
+     * @return the fingerprint, unsigned
+     * @throws IOException if the file failed to be read
+     */
+    public static long hash(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long length = 0;
+            while (channel.read(buffer) >= 0) {
+                length += normalizedLength(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            channel.position(0);
+            Murmur2 murmur2 = new Murmur2(length);
+            while (channel.read(buffer) >= 0) {
+                murmur2.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            return murmur2.finish();
+        }
+    }
+    
+    /**
+     * Hashes the files at the same time, one task on the executor for each file.
+     *
+     * @param files    the files
+     * @param executor the executor hashing the files
+     * @return the future of the fingerprints keyed by the file in the order of the files, completes exceptionally if any file failed to be read
+     */
+    public static CompletableFuture<Map<Path, Long>> hashAll(Collection<Path> files, Executor executor) {
+        Map<Path, CompletableFuture<Long>> futures = new LinkedHashMap<>();
+        for(Path file : files)
+            futures.computeIfAbsent(file, path -> CompletableFuture.supplyAsync(() -> {
+                try {
+                    return hash(path);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).thenApply(v -> {
+            Map<Path, Long> fingerprints = new LinkedHashMap<>();
+            futures.forEach((file, future) -> fingerprints.put(file, future.join()));
+            return fingerprints;
+        });
+    }
+    
+    /**
+     * @param directory the directory, such as the mods folder
+     * @return the jar files in the directory and the sub directories, sorted by the path
+     * @throws IOException if the directory failed to be listed
+     */
+    public static List<Path> listJars(Path directory) throws IOException {
+        try (Stream<Path> stream = Files.walk(directory)) {
+            return stream.filter(path -> path.getFileName().toString().endsWith(".jar") && Files.isRegularFile(path)).sorted().collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private static long normalizedLength(byte[] bytes, int from, int to) {
+        long length = 0;
+        for(int i = from; i < to; i++)
+            if (!isWhitespace(bytes[i]))
+                length++;
+        return length;
+    }
+    
+    private static boolean isWhitespace(byte b) {
+        return b == 9 || b == 10 || b == 13 || b == 32;
+    }
+    
+    /**
+     * Murmur2 fed in chunks, the bytes of a block may be split between the chunks.
+     */
+    private static final class Murmur2 {
+        private int h;
+        private int block;
+        private int blockLength;
+        
+        Murmur2(long length) {
+            this.h = SEED ^ (int) length;
+        }
+        
+        void update(byte[] bytes, int from, int to) {
+            int h = this.h, block = this.block, blockLength = this.blockLength;
+            for(int i = from; i < to; i++) {
+                byte b = bytes[i];
+                if (isWhitespace(b))
+                    continue;
+                block |= (b & 0xFF) << (blockLength << 3);
+                if (++blockLength == 4) {
+                    int k = block * M;
+                    k ^= k >>> 24;
+                    h = h * M ^ k * M;
+                    block = 0;
+                    blockLength = 0;
+                }
+            }
+            this.h = h;
+            this.block = block;
+            this.blockLength = blockLength;
+        }
+        
+        long finish() {
+            int h = this.h;
+            if (blockLength > 0)
+                h = (h ^ block) * M;
+            h ^= h >>> 13;
+            h *= M;
+            h ^= h >>> 15;
+            return h & 0xFFFFFFFFL;
+        }
+    }
+}
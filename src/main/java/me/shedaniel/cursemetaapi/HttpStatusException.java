@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import java.io.IOException;
+
+/**
+ * Thrown if the server answered with a status that is not successful.
+ *
+ * @see Transport.Response#ensureSuccess()
+ */
+public class HttpStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+    private final int status;
+    
+    public HttpStatusException(int status) {
+        super("Server returned HTTP response code: " + status);
+        this.status = status;
+    }
+    
+    public int getStatus() {
+        return status;
+    }
+    
+    /**
+     * @return whether the addon or file does not exist, rather than the server failing
+     */
+    public boolean isNotFound() {
+        return status == 404;
+    }
+    
+    /**
+     * @return whether the server is overloaded or failing, the same request may succeed later
+     */
+    public boolean isRetryable() {
+        return ResilientTransport.isRetryable(status);
+    }
+}
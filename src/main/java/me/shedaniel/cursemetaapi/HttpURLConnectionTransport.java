@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The default {@link Transport}, backed by {@link HttpURLConnection}.
+ * <p>
+ * Connections are pooled by the keep-alive cache of the jvm, which only takes connections back whose body is
+ * read to the end and closed. Responses drain up to {@value #DRAIN_LIMIT} unread bytes when closed.
+ */
+public class HttpURLConnectionTransport implements Transport {
+    static final int DRAIN_LIMIT = 64 * 1024;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong httpsRequests = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private volatile SSLSocketFactory socketFactory;
+    
+    @Override
+    public Response execute(Request request) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) request.getUrl().openConnection();
+        requests.incrementAndGet();
+        if (con instanceof HttpsURLConnection) {
+            httpsRequests.incrementAndGet();
+            // The keep-alive cache only reuses connections created by the same factory
+            ((HttpsURLConnection) con).setSSLSocketFactory(getSocketFactory());
+        }
+        con.setRequestMethod(request.getMethod());
+        con.setRequestProperty("User-Agent", CurseMetaAPI.InternetUtils.USER_AGENT);
+        con.setRequestProperty("Accept-Encoding", "gzip");
+        for(Map.Entry<String, String> header : request.getHeaders().entrySet())
+            con.setRequestProperty(header.getKey(), header.getValue());
+        if (request.getBody() != null) {
+            con.setDoOutput(true);
+            con.setFixedLengthStreamingMode(request.getBody().length);
+            try (OutputStream out = con.getOutputStream()) {
+                out.write(request.getBody());
+            }
+        }
+        int status = con.getResponseCode();
+        InputStream raw = status >= 400 ? con.getErrorStream() : con.getInputStream();
+        if (raw == null)
+            raw = new ByteArrayInputStream(new byte[0]);
+        return new ConnectionResponse(con, status, raw);
+    }
+    
+    /**
+     * @return the number of requests sent
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+    
+    /**
+     * @return the number of https connections opened, plain http connections are not counted
+     */
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+    
+    /**
+     * @return the number of https requests sent on a connection from the keep-alive cache
+     */
+    public long getConnectionsReused() {
+        return Math.max(0, httpsRequests.get() - connectionsOpened.get());
+    }
+    
+    private SSLSocketFactory getSocketFactory() {
+        if (socketFactory == null)
+            synchronized (this) {
+                if (socketFactory == null)
+                    socketFactory = new CountingSocketFactory(HttpsURLConnection.getDefaultSSLSocketFactory());
+            }
+        return socketFactory;
+    }
+    
+    private static class ConnectionResponse implements Response {
+        private final HttpURLConnection con;
+        private final int status;
+        private final InputStream raw;
+        private final InputStream body;
+        private boolean closed;
+        
+        ConnectionResponse(HttpURLConnection con, int status, InputStream raw) {
+            this.con = con;
+            this.status = status;
+            this.raw = raw;
+            InputStream body = new FilterInputStream(raw) {
+                @Override
+                public void close() throws IOException {
+                    ConnectionResponse.this.close();
+                }
+            };
+            if ("gzip".equalsIgnoreCase(con.getContentEncoding()) && status != 204 && status != 304)
+                body = new GzipBody(body);
+            this.body = body;
+        }
+        
+        @Override
+        public int getStatus() {
+            return status;
+        }
+        
+        @Override
+        public String getHeader(String name) {
+            return con.getHeaderField(name);
+        }
+        
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+        
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+            try {
+                byte[] buffer = new byte[8192];
+                int drained = 0, read;
+                while (drained < DRAIN_LIMIT && (read = raw.read(buffer)) != -1)
+                    drained += read;
+            } catch (IOException ignored) {
+            } finally {
+                raw.close();
+            }
+        }
+    }
+    
+    /**
+     * Reads the gzip header on the first read rather than when the response is opened, so an empty body, such as of
+     * a HEAD request, reads as empty instead of failing.
+     */
+    private static class GzipBody extends InputStream {
+        private final PushbackInputStream compressed;
+        private InputStream in;
+        
+        GzipBody(InputStream compressed) {
+            this.compressed = new PushbackInputStream(compressed, 1);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            return stream().read();
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return stream().read(b, off, len);
+        }
+        
+        @Override
+        public int available() throws IOException {
+            return in == null ? 0 : in.available();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (in != null)
+                in.close();
+            else
+                compressed.close();
+        }
+        
+        private InputStream stream() throws IOException {
+            if (in == null) {
+                int first = compressed.read();
+                if (first == -1)
+                    return in = compressed;
+                compressed.unread(first);
+                in = new GZIPInputStream(compressed);
+            }
+            return in;
+        }
+    }
+    
+    private class CountingSocketFactory extends SSLSocketFactory {
+        private final SSLSocketFactory parent;
+        
+        CountingSocketFactory(SSLSocketFactory parent) {
+            this.parent = parent;
+        }
+        
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return parent.getDefaultCipherSuites();
+        }
+        
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return parent.getSupportedCipherSuites();
+        }
+        
+        @Override
+        public Socket createSocket() throws IOException {
+            connectionsOpened.incrementAndGet();
+            return parent.createSocket();
+        }
+        
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            connectionsOpened.incrementAndGet();
+            return parent.createSocket(socket, host, port, autoClose);
+        }
+        
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            connectionsOpened.incrementAndGet();
+            return parent.createSocket(host, port);
+        }
+        
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            connectionsOpened.incrementAndGet();
+            return parent.createSocket(host, port, localHost, localPort);
+        }
+        
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            connectionsOpened.incrementAndGet();
+            return parent.createSocket(host, port);
+        }
+        
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            connectionsOpened.incrementAndGet();
+            return parent.createSocket(address, port, localAddress, localPort);
+        }
+    }
+}
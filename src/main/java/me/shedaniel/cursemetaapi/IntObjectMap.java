@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import java.util.Arrays;
+
+/**
+ * A map of int keys to non-null values with open addressing and linear probing, so ids are not boxed.
+ * <p>
+ * The iteration order is unspecified, the map is not thread-safe.
+ */
+final class IntObjectMap<V> {
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    
+    IntObjectMap() {
+        this(16);
+    }
+    
+    /**
+     * @param expected the number of entries held without growing
+     */
+    IntObjectMap(int expected) {
+        int capacity = capacityFor(expected);
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * @return the value, null if absent
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        for(int slot = slot(key); values[slot] != null; slot = (slot + 1) & mask)
+            if (keys[slot] == key)
+                return (V) values[slot];
+        return null;
+    }
+    
+    /**
+     * @param value the value, not null
+     * @return the previous value, null if absent
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        if (value == null)
+            throw new NullPointerException("value");
+        int slot = slot(key);
+        for(; values[slot] != null; slot = (slot + 1) & mask)
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > (mask + 1) >> 1)
+            resize((mask + 1) << 1);
+        return null;
+    }
+    
+    /**
+     * Removes the entry and shifts the entries probed after it back, so no tombstones are left.
+     *
+     * @return the previous value, null if absent
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        int slot = slot(key);
+        for(; values[slot] != null; slot = (slot + 1) & mask)
+            if (keys[slot] == key)
+                break;
+        if (values[slot] == null)
+            return null;
+        V previous = (V) values[slot];
+        int gap = slot;
+        for(int i = (gap + 1) & mask; values[i] != null; i = (i + 1) & mask)
+            if (((i - slot(keys[i])) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        values[gap] = null;
+        size--;
+        return previous;
+    }
+    
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+    
+    @SuppressWarnings("unchecked")
+    void forEach(Consumer<? super V> consumer) {
+        Object[] values = this.values;
+        for(int slot = 0; slot < values.length; slot++)
+            if (values[slot] != null)
+                consumer.accept(keys[slot], (V) values[slot]);
+    }
+    
+    private int slot(int key) {
+        int hash = key * 0x9e3779b9;
+        return (hash ^ hash >>> 16) & mask;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        for(int i = 0; i < oldValues.length; i++)
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != null)
+                    slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+    }
+    
+    static int capacityFor(int expected) {
+        int capacity = 16;
+        while (capacity >> 1 < expected)
+            capacity <<= 1;
+        return capacity;
+    }
+    
+    interface Consumer<V> {
+        void accept(int key, V value);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import java.util.Arrays;
+
+/**
+ * A set of ints in the order they are added, the ints are kept in an array indexed by an open addressing table.
+ * <p>
+ * The set is not thread-safe.
+ */
+final class IntSet {
+    private int[] elements;
+    private int[] table;
+    private int mask;
+    private int size;
+    
+    IntSet() {
+        this(16);
+    }
+    
+    /**
+     * @param expected the number of ints held without growing
+     */
+    IntSet(int expected) {
+        int capacity = IntObjectMap.capacityFor(expected);
+        this.elements = new int[capacity >> 1];
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+    }
+    
+    /**
+     * @param values the ints
+     * @return the ints without the repeated ones, in the order they first appear
+     */
+    static int[] distinct(int[] values) {
+        IntSet set = new IntSet(values.length);
+        for(int value : values)
+            set.add(value);
+        return set.size == values.length ? values.clone() : set.toArray();
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    /**
+     * @return whether the int is added, false if already present
+     */
+    boolean add(int value) {
+        int slot = slot(value);
+        for(; table[slot] != 0; slot = (slot + 1) & mask)
+            if (elements[table[slot] - 1] == value)
+                return false;
+        elements[size] = value;
+        table[slot] = ++size;
+        if (size == elements.length)
+            resize((mask + 1) << 1);
+        return true;
+    }
+    
+    boolean contains(int value) {
+        for(int slot = slot(value); table[slot] != 0; slot = (slot + 1) & mask)
+            if (elements[table[slot] - 1] == value)
+                return true;
+        return false;
+    }
+    
+    /**
+     * @return the index of the int, in the order the ints are added, -1 if absent
+     */
+    int indexOf(int value) {
+        for(int slot = slot(value); table[slot] != 0; slot = (slot + 1) & mask)
+            if (elements[table[slot] - 1] == value)
+                return table[slot] - 1;
+        return -1;
+    }
+    
+    /**
+     * @param index the index, in the order the ints are added
+     */
+    int get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return elements[index];
+    }
+    
+    /**
+     * @return the ints in the order they are added
+     */
+    int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+    
+    private int slot(int value) {
+        int hash = value * 0x9e3779b9;
+        return (hash ^ hash >>> 16) & mask;
+    }
+    
+    private void resize(int capacity) {
+        elements = Arrays.copyOf(elements, capacity >> 1);
+        table = new int[capacity];
+        mask = capacity - 1;
+        for(int i = 0; i < size; i++) {
+            int slot = slot(elements[i]);
+            while (table[slot] != 0)
+                slot = (slot + 1) & mask;
+            table[slot] = i + 1;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import java.text.ParseException;
+
+/**
+ * Parses the dates of the api, {@code yyyy-MM-ddTHH:mm:ss} with optional fraction of a second and optional
+ * offset, dates without an offset are in UTC.
+ */
+final class Iso8601 {
+    private Iso8601() {}
+    
+    /**
+     * @param date the date
+     * @return the milliseconds since the epoch
+     * @throws ParseException if the date is null or malformed
+     */
+    static long parseMillis(String date) throws ParseException {
+        if (date == null)
+            throw new ParseException("Unparseable date: null", 0);
+        int length = date.length();
+        if (length < 19 || date.charAt(4) != '-' || date.charAt(7) != '-' || (date.charAt(10) != 'T' && date.charAt(10) != ' ') || date.charAt(13) != ':' || date.charAt(16) != ':')
+            throw new ParseException("Unparseable date: \"" + date + "\"", 0);
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 2);
+        int day = digits(date, 8, 2);
+        int hour = digits(date, 11, 2);
+        int minute = digits(date, 14, 2);
+        int second = digits(date, 17, 2);
+        if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 59)
+            throw new ParseException("Unparseable date: \"" + date + "\"", 0);
+        int position = 19;
+        int millis = 0;
+        if (position < length && date.charAt(position) == '.') {
+            int start = ++position;
+            while (position < length && isDigit(date.charAt(position))) {
+                if (position - start < 3)
+                    millis = millis * 10 + (date.charAt(position) - '0');
+                position++;
+            }
+            if (position == start)
+                throw new ParseException("Unparseable date: \"" + date + "\"", position);
+            for(int i = position - start; i < 3; i++)
+                millis *= 10;
+        }
+        int offsetSeconds = 0;
+        if (position < length) {
+            char c = date.charAt(position);
+            if (c == 'Z' && position + 1 == length) {
+                position++;
+            } else if ((c == '+' || c == '-') && (length - position == 6 && date.charAt(position + 3) == ':' || length - position == 5)) {
+                int offsetHour = digits(date, position + 1, 2);
+                int offsetMinute = digits(date, length - 2, 2);
+                offsetSeconds = (c == '+' ? 1 : -1) * (offsetHour * 3600 + offsetMinute * 60);
+                position = length;
+            }
+        }
+        if (position != length)
+            throw new ParseException("Unparseable date: \"" + date + "\"", position);
+        long seconds = daysFromEpoch(year, month, day) * 86400L + hour * 3600 + minute * 60 + second - offsetSeconds;
+        return seconds * 1000 + millis;
+    }
+    
+    private static int digits(String date, int start, int count) throws ParseException {
+        int value = 0;
+        for(int i = start; i < start + count; i++) {
+            char c = date.charAt(i);
+            if (!isDigit(c))
+                throw new ParseException("Unparseable date: \"" + date + "\"", i);
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+    
+    /**
+     * Howard Hinnant's days_from_civil, the days since 1970-01-01 of a date in the proleptic Gregorian calendar.
+     */
+    private static long daysFromEpoch(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
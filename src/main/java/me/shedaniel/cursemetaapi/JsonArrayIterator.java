@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Binds the objects of a json array one at a time while reading the response, elements that are not objects or fail
+ * to be bound are skipped. Closes the response once the array is read to the end, close it to stop early.
+ * <p>
+ * Reading errors are thrown as {@link JsonIOException}.
+ */
+public class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+    private final Gson gson;
+    private final JsonReader reader;
+    private final Class<T> type;
+    private final Closeable onClose;
+    private T next;
+    private boolean started;
+    private boolean closed;
+    
+    JsonArrayIterator(Gson gson, InputStream stream, Class<T> type, Closeable onClose) {
+        this.gson = gson;
+        this.reader = new JsonReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        this.type = type;
+        this.onClose = onClose;
+    }
+    
+    /**
+     * Reads ahead to the next element that binds, so that a failed element is skipped rather than failing the array.
+     */
+    @Override
+    public boolean hasNext() {
+        if (next != null)
+            return true;
+        if (closed)
+            return false;
+        try {
+            if (!started) {
+                started = true;
+                reader.beginArray();
+            }
+            while (reader.hasNext()) {
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                JsonElement element = gson.getAdapter(JsonElement.class).read(reader);
+                try {
+                    next = gson.fromJson(element, type);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                if (next != null)
+                    return true;
+            }
+            reader.endArray();
+            close();
+            return false;
+        } catch (IOException | RuntimeException e) {
+            closeQuietly();
+            throw e instanceof IOException ? new JsonIOException(e) : (RuntimeException) e;
+        }
+    }
+    
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        T element = next;
+        next = null;
+        return element;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            reader.close();
+        } finally {
+            if (onClose != null)
+                onClose.close();
+        }
+    }
+    
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ignored) {
+        }
+    }
+}
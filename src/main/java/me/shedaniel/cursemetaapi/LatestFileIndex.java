@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFile;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Selects the newest file of an addon for a game version and a release type, such as the newest release of JEI for
+ * 1.14.4, from the {@link Addon#gameVersionLatestFiles} and {@link Addon#latestFiles} of the addons added.
+ * <p>
+ * The newest file ids are kept per game version and release type, so a selection is a lookup. If the addons do not
+ * tell, {@link #selectFileId(int, String, int)} lists the files of the addon once with
+ * {@link CurseMetaClient#getAddonFiles(int)} and keeps them in the index, a listing failed or empty is tried again.
+ * <p>
+ * Release types are 1 for releases, 2 for betas and 3 for alphas, a file is selected for its release type or a
+ * greater one. The newest file is the one with the greatest file id.
+ */
+public class LatestFileIndex {
+    private final CurseMetaClient client;
+    private final IntObjectMap<Latest> addons = new IntObjectMap<>();
+    private final IntObjectMap<CompletableFuture<Void>> listings = new IntObjectMap<>();
+    
+    private LatestFileIndex(CurseMetaClient client) {
+        this.client = client;
+    }
+    
+    /**
+     * @return the index using {@link CurseMetaAPI#getClient()}
+     */
+    public static LatestFileIndex create() {
+        return create(CurseMetaAPI.getClient());
+    }
+    
+    public static LatestFileIndex create(CurseMetaClient client) {
+        return new LatestFileIndex(Objects.requireNonNull(client));
+    }
+    
+    public synchronized LatestFileIndex add(Addon addon) {
+        Latest latest = latest(addon.id);
+        if (addon.gameVersionLatestFiles != null)
+            for(Addon.AddonGameVersionFiles files : addon.gameVersionLatestFiles)
+                latest.put(files.gameVersion, null, files.fileType, files.projectFileId);
+        if (addon.latestFiles != null)
+            for(Addon.AddonLatestFiles file : addon.latestFiles) {
+                if (file.sortableGameVersion != null)
+                    for(Addon.AddonLatestFiles.SortableGameVersion version : file.sortableGameVersion)
+                        latest.put(version.gameVersion, version.gameVersionPadded, file.releaseType, file.id);
+                if (file.gameVersion != null)
+                    for(String gameVersion : file.gameVersion)
+                        latest.put(gameVersion, null, file.releaseType, file.id);
+            }
+        return this;
+    }
+    
+    public LatestFileIndex addAll(Collection<Addon> addons) {
+        for(Addon addon : addons)
+            add(addon);
+        return this;
+    }
+    
+    /**
+     * @param addonId the addon id
+     * @param files   the files of the addon, such as of {@link CurseMetaClient#getAddonFiles(int)}
+     */
+    public synchronized LatestFileIndex addFiles(int addonId, Collection<AddonFile> files) {
+        Latest latest = latest(addonId);
+        for(AddonFile file : files)
+            if (file.gameVersion != null)
+                for(String gameVersion : file.gameVersion)
+                    latest.put(gameVersion, null, file.releaseType, file.fileId);
+        return this;
+    }
+    
+    /**
+     * @param addonId        the addon id
+     * @param gameVersion    the game version, such as 1.14.4, null for any game version
+     * @param maxReleaseType 1 for releases, 2 for betas, 3 for alphas
+     * @return the newest file id known, 0 if none
+     */
+    public synchronized int getLatestFileId(int addonId, String gameVersion, int maxReleaseType) {
+        Latest latest = addons.get(addonId);
+        return latest == null ? 0 : latest.get(gameVersion, maxReleaseType);
+    }
+    
+    /**
+     * Selects from the index, or lists the files of the addon once if the index has no file for the game version.
+     *
+     * @param addonId        the addon id
+     * @param gameVersion    the game version, such as 1.14.4, null for any game version
+     * @param maxReleaseType 1 for releases, 2 for betas, 3 for alphas
+     * @return the future of the newest file id, completes with 0 if none or the files failed to be listed
+     */
+    public CompletableFuture<Integer> selectFileId(int addonId, String gameVersion, int maxReleaseType) {
+        CompletableFuture<Void> listing;
+        boolean list = false;
+        synchronized (this) {
+            int fileId = getLatestFileId(addonId, gameVersion, maxReleaseType);
+            if (fileId > 0)
+                return CompletableFuture.completedFuture(fileId);
+            listing = listings.get(addonId);
+            if (listing == null) {
+                listings.put(addonId, listing = new CompletableFuture<>());
+                list = true;
+            }
+        }
+        if (list)
+            list(addonId, listing);
+        return listing.thenApply(v -> getLatestFileId(addonId, gameVersion, maxReleaseType));
+    }
+    
+    /**
+     * Lists the files of the addon, the listing is forgotten if it failed or found no file so it is listed again by
+     * the next selection. The listing always completes normally.
+     */
+    private void list(int addonId, CompletableFuture<Void> listing) {
+        CompletableFuture<List<AddonFile>> files;
+        try {
+            files = client.getAddonFiles(addonId);
+        } catch (RuntimeException e) {
+            files = new CompletableFuture<>();
+            files.completeExceptionally(e);
+        }
+        files.whenComplete((listed, throwable) -> {
+            synchronized (this) {
+                if (throwable == null && listed != null && !listed.isEmpty())
+                    addFiles(addonId, listed);
+                else if (listings.get(addonId) == listing)
+                    listings.remove(addonId);
+            }
+            listing.complete(null);
+        });
+    }
+    
+    /**
+     * @param addonId the addon id
+     * @return the game versions of the files known, from the newest to the oldest, a pre-release such as
+     * {@code 1.14-Snapshot} is older than {@code 1.14}
+     */
+    public synchronized List<String> getGameVersions(int addonId) {
+        Latest latest = addons.get(addonId);
+        return latest == null ? Collections.emptyList() : latest.getGameVersions();
+    }
+    
+    private Latest latest(int addonId) {
+        Latest latest = addons.get(addonId);
+        if (latest == null)
+            addons.put(addonId, latest = new Latest());
+        return latest;
+    }
+    
+    /**
+     * Pads the numbers of the game version like {@link Addon.AddonLatestFiles.SortableGameVersion#gameVersionPadded},
+     * so versions sort as strings, 1.14.4 is {@code 0000000001.0000000014.0000000004}.
+     *
+     * @return the padded game version, null if the game version does not start with a number, such as Forge
+     */
+    static String pad(String gameVersion) {
+        if (gameVersion.isEmpty() || !Character.isDigit(gameVersion.charAt(0)))
+            return null;
+        StringBuilder padded = new StringBuilder(gameVersion.length() + 30);
+        int i = 0;
+        while (i < gameVersion.length()) {
+            int start = i;
+            while (i < gameVersion.length() && Character.isDigit(gameVersion.charAt(i)))
+                i++;
+            for(int digits = i - start; digits < 10; digits++)
+                padded.append('0');
+            padded.append(gameVersion, start, i);
+            while (i < gameVersion.length() && !Character.isDigit(gameVersion.charAt(i)))
+                padded.append(gameVersion.charAt(i++));
+        }
+        return padded.toString();
+    }
+    
+    /**
+     * Compares padded game versions like strings, except that a suffix other than a {@code .} sorts before the end
+     * of the version, so a pre-release such as {@code 1.14-Snapshot} sorts before {@code 1.14}.
+     */
+    static int comparePadded(String a, String b) {
+        for(int i = 0; ; i++) {
+            int weight = weight(a, i), other = weight(b, i);
+            if (weight != other)
+                return Integer.compare(weight, other);
+            if (i >= a.length())
+                return 0;
+        }
+    }
+    
+    private static int weight(String padded, int i) {
+        if (i >= padded.length())
+            return 0;
+        char c = padded.charAt(i);
+        if (c == '.')
+            return 1;
+        return Character.isDigit(c) ? 2 + c : c - 0x10000;
+    }
+    
+    /**
+     * The newest file ids of one addon, the file id at {@code releaseType - 1} is the newest of that release type or
+     * a lesser one.
+     */
+    private static class Latest {
+        private final Map<String, int[]> byGameVersion = new HashMap<>();
+        private final Map<String, String> padded = new HashMap<>();
+        private final int[] any = new int[3];
+        private List<String> gameVersions;
+        
+        void put(String gameVersion, String gameVersionPadded, int releaseType, int fileId) {
+            if (releaseType < 1 || releaseType > 3 || fileId <= 0)
+                return;
+            put(any, releaseType, fileId);
+            if (gameVersion == null)
+                return;
+            int[] fileIds = byGameVersion.get(gameVersion);
+            if (fileIds == null) {
+                byGameVersion.put(gameVersion, fileIds = new int[3]);
+                gameVersions = null;
+            }
+            put(fileIds, releaseType, fileId);
+            if (gameVersionPadded != null && !gameVersionPadded.equals(padded.put(gameVersion, gameVersionPadded)))
+                gameVersions = null;
+        }
+        
+        private static void put(int[] fileIds, int releaseType, int fileId) {
+            for(int i = releaseType - 1; i < 3; i++)
+                fileIds[i] = Math.max(fileIds[i], fileId);
+        }
+        
+        int get(String gameVersion, int maxReleaseType) {
+            if (maxReleaseType < 1)
+                return 0;
+            int[] fileIds = gameVersion == null ? any : byGameVersion.get(gameVersion);
+            return fileIds == null ? 0 : fileIds[Math.min(maxReleaseType, 3) - 1];
+        }
+        
+        List<String> getGameVersions() {
+            if (gameVersions == null) {
+                Map<String, String> sortable = new HashMap<>();
+                for(String gameVersion : byGameVersion.keySet()) {
+                    String key = padded.containsKey(gameVersion) ? padded.get(gameVersion) : pad(gameVersion);
+                    if (key != null)
+                        sortable.put(gameVersion, key);
+                }
+                List<String> sorted = new ArrayList<>(sortable.keySet());
+                sorted.sort((a, b) -> comparePadded(sortable.get(b), sortable.get(a)));
+                gameVersions = Collections.unmodifiableList(sorted);
+            }
+            return gameVersions;
+        }
+    }
+}
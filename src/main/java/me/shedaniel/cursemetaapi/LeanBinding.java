@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFile;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact binding of the addons and files, for holding many of them in memory.
+ * <p>
+ * The rarely used {@link com.google.gson.JsonElement} fields of the files, such as {@code installMetadata} and
+ * {@code changelog}, are skipped at the token level and stay null. Repeated strings, such as game versions and
+ * category names, are interned. Primitive fields are read without boxing.
+ * <p>
+ * Use it with {@link CurseMetaClient#setGson(Gson)}.
+ */
+public final class LeanBinding {
+    public static final Gson GSON = register(new GsonBuilder()).create();
+    private static final int MAX_INTERNED = 100_000;
+    
+    private LeanBinding() {}
+    
+    /**
+     * @param builder the builder
+     * @return the builder, with the lean adapters of the addons and files registered
+     */
+    public static GsonBuilder register(GsonBuilder builder) {
+        Factory factory = new Factory();
+        factory.bind(Addon.class, Collections.emptySet(), set("primaryLanguage", "gameSlug", "gameName", "portalName"));
+        factory.bind(Addon.AddonAuthor.class, Collections.emptySet(), set("name", "url"));
+        factory.bind(Addon.AddonCategory.class, Collections.emptySet(), set("name", "url", "avatarUrl"));
+        factory.bind(Addon.AddonCategorySection.class, Collections.emptySet(), set("name", "path", "initialInclusionPattern", "extraIncludePattern"));
+        factory.bind(Addon.AddonGameVersionFiles.class, Collections.emptySet(), set("gameVersion"));
+        factory.bind(Addon.AddonLatestFiles.class, set("installMetadata", "changelog", "fileLegacyMappingId", "parentProjectFileId", "parentFileLegacyMappingId", "fileTypeId", "exposeAsAlternative", "serverPackFileId"), set("gameVersion", "gameVersionDateReleased"));
+        factory.bind(Addon.AddonLatestFiles.FileModules.class, Collections.emptySet(), set("moduleName"));
+        factory.bind(Addon.AddonLatestFiles.SortableGameVersion.class, Collections.emptySet(), set("gameVersionPadded", "gameVersion", "gameVersionReleaseDate", "gameVersionName"));
+        factory.bind(AddonFile.class, set("installMetadata", "serverPackFileId"), set("gameVersion"));
+        factory.bind(AddonFile.FileModule.class, Collections.emptySet(), set("folderName"));
+        return builder.registerTypeAdapterFactory(factory);
+    }
+    
+    private static Set<String> set(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+    
+    private static class Factory implements TypeAdapterFactory {
+        private final Map<Class<?>, Rules> bindings = new HashMap<>();
+        private final Map<String, String> interned = new ConcurrentHashMap<>();
+        
+        void bind(Class<?> type, Set<String> skipped, Set<String> interned) {
+            bindings.put(type, new Rules(skipped, interned));
+        }
+        
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            Rules rules = bindings.get(type.getRawType());
+            if (rules == null)
+                return null;
+            return new Adapter<>(this, gson, gson.getDelegateAdapter(this, type), type.getRawType(), rules.skipped, rules.interned);
+        }
+        
+        String intern(String string) {
+            String existing = interned.get(string);
+            if (existing != null)
+                return existing;
+            if (interned.size() >= MAX_INTERNED)
+                return string;
+            existing = interned.putIfAbsent(string, string);
+            return existing == null ? string : existing;
+        }
+    }
+    
+    /**
+     * The field names of a type that are skipped and interned.
+     */
+    private static class Rules {
+        private final Set<String> skipped;
+        private final Set<String> interned;
+        
+        Rules(Set<String> skipped, Set<String> interned) {
+            this.skipped = skipped;
+            this.interned = interned;
+        }
+    }
+    
+    private static class Adapter<T> extends TypeAdapter<T> {
+        private final Factory factory;
+        private final TypeAdapter<T> delegate;
+        private final Constructor<? super T> constructor;
+        private final Map<String, Binding> fields = new HashMap<>();
+        
+        Adapter(Factory factory, Gson gson, TypeAdapter<T> delegate, Class<? super T> type, Set<String> skipped, Set<String> interned) {
+            this.factory = factory;
+            this.delegate = delegate;
+            try {
+                this.constructor = type.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(type.getName() + " has no constructor without parameters", e);
+            }
+            for(Field field : type.getFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) || skipped.contains(field.getName()))
+                    continue;
+                SerializedName serializedName = field.getAnnotation(SerializedName.class);
+                String name = serializedName == null ? field.getName() : serializedName.value();
+                boolean intern = interned.contains(field.getName());
+                fields.put(name, new Binding(field, intern, isStringList(field) || field.getType().isPrimitive() || field.getType() == String.class ? null : gson.getAdapter(TypeToken.get(field.getGenericType()))));
+            }
+        }
+        
+        private static boolean isStringList(Field field) {
+            return field.getType() == List.class && field.getGenericType() instanceof ParameterizedType
+                   && ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0] == String.class;
+        }
+        
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            delegate.write(out, value);
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public T read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            T instance;
+            try {
+                instance = (T) constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new JsonParseException("Unable to create " + constructor.getDeclaringClass().getName(), e);
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                Binding binding = fields.get(in.nextName());
+                if (binding == null) {
+                    in.skipValue();
+                    continue;
+                }
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                try {
+                    binding.read(factory, in, instance);
+                } catch (IllegalAccessException e) {
+                    throw new JsonParseException(e);
+                }
+            }
+            in.endObject();
+            return instance;
+        }
+    }
+    
+    private static class Binding {
+        private final Field field;
+        private final Class<?> type;
+        private final boolean intern;
+        private final TypeAdapter<?> adapter;
+        
+        Binding(Field field, boolean intern, TypeAdapter<?> adapter) {
+            this.field = field;
+            this.type = field.getType();
+            this.intern = intern;
+            this.adapter = adapter;
+        }
+        
+        void read(Factory factory, JsonReader in, Object instance) throws IOException, IllegalAccessException {
+            if (type == int.class)
+                field.setInt(instance, in.nextInt());
+            else if (type == long.class)
+                field.setLong(instance, in.nextLong());
+            else if (type == boolean.class)
+                field.setBoolean(instance, in.nextBoolean());
+            else if (type == double.class)
+                field.setDouble(instance, in.nextDouble());
+            else if (type == float.class)
+                field.setFloat(instance, (float) in.nextDouble());
+            else if (type == String.class)
+                field.set(instance, readString(factory, in));
+            else if (adapter == null) {
+                List<String> list = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        list.add(null);
+                    } else list.add(readString(factory, in));
+                }
+                in.endArray();
+                field.set(instance, list);
+            } else field.set(instance, adapter.read(in));
+        }
+        
+        private String readString(Factory factory, JsonReader in) throws IOException {
+            String string = in.nextString();
+            return intern ? factory.intern(string) : string;
+        }
+    }
+}
@@ -16,7 +16,13 @@
 
 package me.shedaniel.cursemetaapi;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class MetaSearch {
     private int gameId;
@@ -53,6 +59,62 @@ public class MetaSearch {
         return CurseMetaAPI.search(this);
     }
     
+    /**
+     * @return the future of the list of addons found, completes with empty list if error
+     */
+    public CompletableFuture<List<CurseMetaAPI.Addon>> searchAsync() {
+        return CurseMetaAPI.getClient().search(this);
+    }
+    
+    /**
+     * Iterates every page of the search from the page index, the next page is requested in the background
+     * while the current page is read. Stops at the last page, which is shorter than the page size.
+     *
+     * @return the iterator of the addons found, stops early if error
+     */
+    public Iterator<CurseMetaAPI.Addon> iterator() {
+        return iterator(Integer.MAX_VALUE);
+    }
+    
+    /**
+     * @param limit the maximum of addons returned
+     * @return the iterator of the addons found, stops early if error
+     * @see #iterator()
+     */
+    public Iterator<CurseMetaAPI.Addon> iterator(int limit) {
+        return CurseMetaAPI.getClient().searchAll(this, limit);
+    }
+    
+    /**
+     * @return the stream of the addons found in every page, stops early if error
+     * @see #iterator()
+     */
+    public Stream<CurseMetaAPI.Addon> stream() {
+        return stream(Integer.MAX_VALUE);
+    }
+    
+    /**
+     * @param limit the maximum of addons returned
+     * @return the stream of the addons found in every page, stops early if error
+     * @see #iterator()
+     */
+    public Stream<CurseMetaAPI.Addon> stream(int limit) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(limit), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+    
+    MetaSearch copy() {
+        MetaSearch copy = new MetaSearch(gameId);
+        copy.sectionId = sectionId;
+        copy.categoryId = categoryId;
+        copy.sort = sort;
+        copy.isSortDescending = isSortDescending;
+        copy.gameVersion = gameVersion;
+        copy.index = index;
+        copy.pageSize = pageSize;
+        copy.searchFilter = searchFilter;
+        return copy;
+    }
+    
     public int getGameId() {
         return gameId;
     }
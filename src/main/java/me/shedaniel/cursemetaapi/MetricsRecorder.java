@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the requests of a {@link CurseMetaClient} per endpoint: counts, errors, bytes, network and
+ * deserialization time and a latency histogram, with the cache hits and the requests in flight.
+ * <p>
+ * {@link #getMeters()} names the values the way Micrometer does, so they can be registered as function counters and
+ * gauges of a meter registry without depending on it.
+ */
+public class MetricsRecorder implements ClientMetrics {
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    private final AtomicLongArray cacheHits = new AtomicLongArray(ResponseCache.Endpoint.values().length);
+    private final AtomicLongArray cacheMisses = new AtomicLongArray(ResponseCache.Endpoint.values().length);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    private MetricsRecorder() {}
+    
+    public static MetricsRecorder create() {
+        return new MetricsRecorder();
+    }
+    
+    @Override
+    public void requestStarted(String endpoint) {
+        inFlight.incrementAndGet();
+    }
+    
+    @Override
+    public void requestCompleted(String endpoint, int status, long networkNanos, long deserializationNanos, long bytes, Throwable error) {
+        inFlight.decrementAndGet();
+        endpoints.computeIfAbsent(endpoint, name -> new EndpointMetrics()).record(networkNanos, deserializationNanos, bytes, error != null);
+    }
+    
+    @Override
+    public void cacheLookup(ResponseCache.Endpoint endpoint, boolean hit) {
+        (hit ? cacheHits : cacheMisses).incrementAndGet(endpoint.ordinal());
+    }
+    
+    /**
+     * @return the requests sent and not completed yet
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    /**
+     * @return the metrics keyed by the endpoint, such as {@code addon} or {@code addon.search}
+     */
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return Collections.unmodifiableMap(new TreeMap<>(endpoints));
+    }
+    
+    public long getCacheHits(ResponseCache.Endpoint endpoint) {
+        return cacheHits.get(endpoint.ordinal());
+    }
+    
+    public long getCacheMisses(ResponseCache.Endpoint endpoint) {
+        return cacheMisses.get(endpoint.ordinal());
+    }
+    
+    /**
+     * @return the part of the cache lookups of every endpoint that hit, NaN if none
+     */
+    public double getCacheHitRate() {
+        long hits = 0, lookups = 0;
+        for(ResponseCache.Endpoint endpoint : ResponseCache.Endpoint.values()) {
+            hits += getCacheHits(endpoint);
+            lookups += getCacheHits(endpoint) + getCacheMisses(endpoint);
+        }
+        return (double) hits / lookups;
+    }
+    
+    /**
+     * Returns the current values keyed by the meter name and its tags, such as
+     * {@code cursemeta.requests.count{endpoint=addon}}, the times are in seconds.
+     *
+     * @return the values sorted by the key
+     */
+    public Map<String, Double> getMeters() {
+        Map<String, Double> meters = new TreeMap<>();
+        meters.put("cursemeta.requests.inflight", (double) getInFlight());
+        getEndpoints().forEach((name, endpoint) -> {
+            String tags = "{endpoint=" + name + "}";
+            meters.put("cursemeta.requests.count" + tags, (double) endpoint.getCount());
+            meters.put("cursemeta.requests.errors" + tags, (double) endpoint.getErrors());
+            meters.put("cursemeta.requests.bytes" + tags, (double) endpoint.getBytes());
+            meters.put("cursemeta.requests.network.seconds" + tags, endpoint.getNetworkNanos() / 1e9);
+            meters.put("cursemeta.requests.deserialization.seconds" + tags, endpoint.getDeserializationNanos() / 1e9);
+            meters.put("cursemeta.requests.latency.p50" + tags, endpoint.getLatencyPercentile(0.5, TimeUnit.NANOSECONDS) / 1e9);
+            meters.put("cursemeta.requests.latency.p99" + tags, endpoint.getLatencyPercentile(0.99, TimeUnit.NANOSECONDS) / 1e9);
+        });
+        for(ResponseCache.Endpoint endpoint : ResponseCache.Endpoint.values()) {
+            meters.put("cursemeta.cache.hits{cache=" + endpoint.name().toLowerCase(Locale.ROOT) + "}", (double) getCacheHits(endpoint));
+            meters.put("cursemeta.cache.misses{cache=" + endpoint.name().toLowerCase(Locale.ROOT) + "}", (double) getCacheMisses(endpoint));
+        }
+        return meters;
+    }
+    
+    public static class EndpointMetrics {
+        /**
+         * Buckets of the latency in microseconds, 4 per power of two so a percentile is within 25% of the latency.
+         */
+        private static final int SUB_BUCKETS = 4;
+        private final AtomicLongArray latencies = new AtomicLongArray(SUB_BUCKETS + 61 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder networkNanos = new LongAdder();
+        private final LongAdder deserializationNanos = new LongAdder();
+        
+        EndpointMetrics() {}
+        
+        void record(long network, long deserialization, long read, boolean error) {
+            count.increment();
+            if (error)
+                errors.increment();
+            bytes.add(read);
+            networkNanos.add(network);
+            if (deserialization > 0)
+                deserializationNanos.add(deserialization);
+            latencies.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMicros(network + Math.max(0, deserialization))));
+        }
+        
+        public long getCount() {
+            return count.sum();
+        }
+        
+        public long getErrors() {
+            return errors.sum();
+        }
+        
+        public long getBytes() {
+            return bytes.sum();
+        }
+        
+        public long getNetworkNanos() {
+            return networkNanos.sum();
+        }
+        
+        /**
+         * @return the deserialization time, without the requests whose body is read by the caller
+         */
+        public long getDeserializationNanos() {
+            return deserializationNanos.sum();
+        }
+        
+        /**
+         * @param percentile the percentile, from 0 to 1
+         * @param unit       the unit
+         * @return the upper bound of the latency of the percentile of the requests, 0 if none
+         */
+        public long getLatencyPercentile(double percentile, TimeUnit unit) {
+            long total = 0;
+            for(int i = 0; i < latencies.length(); i++)
+                total += latencies.get(i);
+            long rank = Math.max(1, (long) Math.ceil(percentile * total)), seen = 0;
+            for(int i = 0; i < latencies.length() && total > 0; i++)
+                if ((seen += latencies.get(i)) >= rank)
+                    return unit.convert(upperBound(i), TimeUnit.MICROSECONDS);
+            return 0;
+        }
+        
+        static int bucket(long micros) {
+            if (micros < SUB_BUCKETS)
+                return (int) Math.max(0, micros);
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            return SUB_BUCKETS + (exponent - 2) * SUB_BUCKETS + (int) (micros >>> (exponent - 2)) - SUB_BUCKETS;
+        }
+        
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS)
+                return bucket;
+            int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+            long lower = (long) (SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << (exponent - 2);
+            return lower + (1L << (exponent - 2)) - 1;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFile;
+import me.shedaniel.cursemetaapi.CurseMetaAPI.AddonFilesBulk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resolves the files of a modpack {@code manifest.json}, the addons and the files are fetched at the same time with
+ * {@link CurseMetaClient#getAddons(int...)} and {@link CurseMetaClient#getAddonFilesBulk(int...)}, then joined.
+ * <p>
+ * Files the bulk response answers as not found are fetched one at a time with
+ * {@link CurseMetaClient#getAddonFile(int, int)}, the files of a failed bulk request are requested in bulk once more.
+ */
+public class ModpackResolver {
+    private final CurseMetaClient client;
+    
+    private ModpackResolver(CurseMetaClient client) {
+        this.client = client;
+    }
+    
+    /**
+     * @return the resolver using {@link CurseMetaAPI#getClient()}
+     */
+    public static ModpackResolver create() {
+        return create(CurseMetaAPI.getClient());
+    }
+    
+    public static ModpackResolver create(CurseMetaClient client) {
+        return new ModpackResolver(Objects.requireNonNull(client));
+    }
+    
+    /**
+     * Reads the manifest in one pass without binding it, the files with the same file id are kept once.
+     *
+     * @param reader the manifest, closed once read
+     * @return the manifest
+     * @throws IOException if the manifest failed to be read or is malformed
+     */
+    public static Manifest parse(Reader reader) throws IOException {
+        Manifest manifest = new Manifest();
+        IntSet fileIds = new IntSet();
+        List<Entry> entries = new ArrayList<>();
+        try (JsonReader json = new JsonReader(reader)) {
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (json.peek() == JsonToken.NULL)
+                    json.skipValue();
+                else if (name.equals("name"))
+                    manifest.name = json.nextString();
+                else if (name.equals("version"))
+                    manifest.version = json.nextString();
+                else if (name.equals("author"))
+                    manifest.author = json.nextString();
+                else if (name.equals("minecraft"))
+                    readMinecraft(json, manifest);
+                else if (name.equals("files")) {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        Entry entry = readEntry(json);
+                        if (fileIds.add(entry.fileId))
+                            entries.add(entry);
+                    }
+                    json.endArray();
+                } else
+                    json.skipValue();
+            }
+            json.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed manifest", e);
+        }
+        manifest.entries = Collections.unmodifiableList(entries);
+        return manifest;
+    }
+    
+    private static void readMinecraft(JsonReader json, Manifest manifest) throws IOException {
+        List<String> modLoaders = new ArrayList<>();
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("version") && json.peek() == JsonToken.STRING)
+                manifest.minecraftVersion = json.nextString();
+            else if (name.equals("modLoaders") && json.peek() == JsonToken.BEGIN_ARRAY) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    json.beginObject();
+                    while (json.hasNext())
+                        if (json.nextName().equals("id") && json.peek() == JsonToken.STRING)
+                            modLoaders.add(json.nextString());
+                        else
+                            json.skipValue();
+                    json.endObject();
+                }
+                json.endArray();
+            } else
+                json.skipValue();
+        }
+        json.endObject();
+        manifest.modLoaders = Collections.unmodifiableList(modLoaders);
+    }
+    
+    private static Entry readEntry(JsonReader json) throws IOException {
+        int projectId = 0, fileId = 0;
+        boolean required = true;
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("projectID"))
+                projectId = json.nextInt();
+            else if (name.equals("fileID"))
+                fileId = json.nextInt();
+            else if (name.equals("required") && json.peek() == JsonToken.BOOLEAN)
+                required = json.nextBoolean();
+            else
+                json.skipValue();
+        }
+        json.endObject();
+        return new Entry(projectId, fileId, required);
+    }
+    
+    /**
+     * @param manifest the path of the {@code manifest.json}
+     * @return the future of the pack, completes exceptionally if the manifest failed to be read
+     */
+    public CompletableFuture<Pack> resolve(Path manifest) {
+        try {
+            return resolve(parse(Files.newBufferedReader(manifest, StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            CompletableFuture<Pack> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+    
+    /**
+     * @param manifest the manifest
+     * @return the future of the pack, files failed to be fetched are missing
+     */
+    public CompletableFuture<Pack> resolve(Manifest manifest) {
+        int[] projectIds = manifest.entries.stream().mapToInt(Entry::getProjectId).distinct().toArray();
+        int[] fileIds = manifest.entries.stream().mapToInt(Entry::getFileId).toArray();
+        CompletableFuture<List<Addon>> addons = client.getAddons(projectIds);
+        IntObjectMap<AddonFile> found = new IntObjectMap<>(fileIds.length);
+        IntSet notFound = new IntSet();
+        CompletableFuture<IntObjectMap<AddonFile>> files = client.getAddonFilesBulk(fileIds).thenCompose(bulk -> {
+            collect(bulk, fileIds, found, notFound);
+            // A failed chunk says nothing of its files, request them in bulk again rather than one at a time
+            int[] failed = bulk.getFailedFileIds();
+            if (failed.length == 0)
+                return CompletableFuture.completedFuture(null);
+            return client.getAddonFilesBulk(failed).thenAccept(retry -> collect(retry, failed, found, notFound));
+        }).thenCompose(ignored -> {
+            if (notFound.size() == 0)
+                return CompletableFuture.completedFuture(found);
+            List<CompletableFuture<AddonFile>> singles = new ArrayList<>();
+            for(Entry entry : manifest.entries)
+                if (notFound.contains(entry.fileId))
+                    singles.add(client.getAddonFile(entry.projectId, entry.fileId));
+            return CompletableFuture.allOf(singles.toArray(new CompletableFuture[0])).thenApply(v -> {
+                for(CompletableFuture<AddonFile> single : singles) {
+                    AddonFile file = single.join();
+                    if (file != null)
+                        found.put(file.fileId, file);
+                }
+                return found;
+            });
+        });
+        return addons.thenCombine(files, (addonList, fileMap) -> {
+            IntObjectMap<Addon> addonMap = new IntObjectMap<>(addonList.size());
+            for(Addon addon : addonList)
+                addonMap.put(addon.id, addon);
+            List<Mod> mods = new ArrayList<>();
+            List<Entry> missing = new ArrayList<>();
+            for(Entry entry : manifest.entries) {
+                AddonFile file = fileMap.get(entry.fileId);
+                if (file == null)
+                    missing.add(entry);
+                else
+                    mods.add(new Mod(entry, addonMap.get(entry.projectId), file));
+            }
+            return new Pack(manifest, mods, missing);
+        });
+    }
+    
+    private static void collect(AddonFilesBulk bulk, int[] fileIds, IntObjectMap<AddonFile> found, IntSet notFound) {
+        for(int fileId : fileIds) {
+            AddonFile file = bulk.getFile(fileId);
+            if (file != null)
+                found.put(fileId, file);
+        }
+        for(int fileId : bulk.getMissingFileIds())
+            notFound.add(fileId);
+    }
+    
+    public static class Manifest {
+        private String name;
+        private String version;
+        private String author;
+        private String minecraftVersion;
+        private List<String> modLoaders = Collections.emptyList();
+        private List<Entry> entries = Collections.emptyList();
+        
+        Manifest() {}
+        
+        public String getName() {
+            return name;
+        }
+        
+        public String getVersion() {
+            return version;
+        }
+        
+        public String getAuthor() {
+            return author;
+        }
+        
+        public String getMinecraftVersion() {
+            return minecraftVersion;
+        }
+        
+        /**
+         * @return the mod loader ids, such as forge-14.23.5.2847
+         */
+        public List<String> getModLoaders() {
+            return modLoaders;
+        }
+        
+        /**
+         * @return the files in the order of the manifest, without duplicated file ids
+         */
+        public List<Entry> getEntries() {
+            return entries;
+        }
+    }
+    
+    public static class Entry {
+        private final int projectId;
+        private final int fileId;
+        private final boolean required;
+        
+        Entry(int projectId, int fileId, boolean required) {
+            this.projectId = projectId;
+            this.fileId = fileId;
+            this.required = required;
+        }
+        
+        public int getProjectId() {
+            return projectId;
+        }
+        
+        public int getFileId() {
+            return fileId;
+        }
+        
+        public boolean isRequired() {
+            return required;
+        }
+    }
+    
+    public static class Mod {
+        private final Entry entry;
+        private final Addon addon;
+        private final AddonFile file;
+        
+        Mod(Entry entry, Addon addon, AddonFile file) {
+            this.entry = entry;
+            this.addon = addon;
+            this.file = file;
+        }
+        
+        public Entry getEntry() {
+            return entry;
+        }
+        
+        /**
+         * @return the addon, null if it failed to be fetched
+         */
+        public Addon getAddon() {
+            return addon;
+        }
+        
+        public AddonFile getFile() {
+            return file;
+        }
+        
+        public String getDownloadUrl() {
+            return file.downloadUrl;
+        }
+        
+        public long getFileLength() {
+            return file.fileLength;
+        }
+    }
+    
+    public static class Pack {
+        private final Manifest manifest;
+        private final List<Mod> mods;
+        private final List<Entry> missing;
+        
+        Pack(Manifest manifest, List<Mod> mods, List<Entry> missing) {
+            this.manifest = manifest;
+            this.mods = Collections.unmodifiableList(mods);
+            this.missing = Collections.unmodifiableList(missing);
+        }
+        
+        public Manifest getManifest() {
+            return manifest;
+        }
+        
+        /**
+         * @return the mods resolved, in the order of the manifest
+         */
+        public List<Mod> getMods() {
+            return mods;
+        }
+        
+        /**
+         * @return the files resolved, such as for {@link DownloadManager#downloadAll(Collection, Path)}
+         */
+        public List<AddonFile> getFiles() {
+            List<AddonFile> files = new ArrayList<>(mods.size());
+            for(Mod mod : mods)
+                files.add(mod.file);
+            return files;
+        }
+        
+        /**
+         * @return the entries whose file is not found or failed to be fetched
+         */
+        public List<Entry> getMissing() {
+            return missing;
+        }
+        
+        /**
+         * @return the sum of the lengths of the files resolved
+         */
+        public long getTotalLength() {
+            long total = 0;
+            for(Mod mod : mods)
+                total += mod.getFileLength();
+            return total;
+        }
+    }
+}
@@ -0,0 +1,575 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+/**
+ * A local index of the addons answering {@link MetaSearch} queries without a request, such as for autocomplete.
+ * <p>
+ * The search filter matches the words of the name, the slug and the authors by prefix, every word of the filter must match.
+ * The words and the sort orders are built on the first search needing them, then kept up to date as addons are put.
+ * <p>
+ * The addons put are kept as they are, a loaded snapshot keeps them as json in the mapped file and reads each once it
+ * is first returned. The addons returned are shared and must not be modified.
+ */
+public class OfflineAddonIndex {
+    private static final int MAGIC = 0x434d4149;
+    private static final int VERSION = 1;
+    private static final MetaSearch.SortMethod[] SORTS = MetaSearch.SortMethod.values();
+    private static final List<Comparator<Entry>> COMPARATORS = new ArrayList<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private final IntObjectMap<Entry> byId = new IntObjectMap<>();
+    private long lastModified;
+    /**
+     * The ordinals of the entries by word, null until the first search filter.
+     */
+    private TreeMap<String, Postings> tokens;
+    /**
+     * The ordinals of the entries by sort, the first {@code entries.size()} are sorted, null until first sorted on.
+     */
+    private final int[][] orders = new int[SORTS.length][];
+    
+    static {
+        for(MetaSearch.SortMethod sort : SORTS)
+            COMPARATORS.add(comparator(sort).thenComparingInt(entry -> entry.id));
+    }
+    
+    private OfflineAddonIndex() {}
+    
+    public static OfflineAddonIndex create() {
+        return new OfflineAddonIndex();
+    }
+    
+    /**
+     * Builds the index from every page of the search, such as the search of a section.
+     *
+     * @param client the client
+     * @param search the search crawled from the page index
+     * @return the future of the index, stops at the first page failed to be fetched
+     */
+    public static CompletableFuture<OfflineAddonIndex> crawl(CurseMetaClient client, MetaSearch search) {
+        return CompletableFuture.supplyAsync(() -> {
+            OfflineAddonIndex index = create();
+            client.searchAll(search, Integer.MAX_VALUE).forEachRemaining(index::put);
+            return index;
+        }, client.getExecutor());
+    }
+    
+    /**
+     * Fetches the addons modified since the last modified addon of the index.
+     *
+     * @param client the client
+     * @param search the search crawled
+     * @return the future of the number of addons added or changed, completes exceptionally if error
+     * @see ChangeFeed
+     */
+    public CompletableFuture<Integer> update(CurseMetaClient client, MetaSearch search) {
+        return ChangeFeed.create(client, search).setCheckpoint(getLastModified()).poll(delta -> put(delta.getAddon()));
+    }
+    
+    /**
+     * Adds the addon or replaces the addon with the same id.
+     */
+    public synchronized void put(Addon addon) {
+        Entry entry = new Entry(addon);
+        Entry previous = byId.put(addon.id, entry);
+        if (previous == null) {
+            entry.ordinal = entries.size();
+            entries.add(entry);
+        } else {
+            entry.ordinal = previous.ordinal;
+            unindex(previous);
+            entries.set(entry.ordinal, entry);
+        }
+        index(entry, entries.size() - 1);
+        lastModified = Math.max(lastModified, entry.dateModified);
+    }
+    
+    public void putAll(Collection<Addon> addons) {
+        for(Addon addon : addons)
+            put(addon);
+    }
+    
+    /**
+     * @param id the addon id
+     * @return the addon, returns null if not indexed
+     */
+    public synchronized Addon get(int id) {
+        Entry entry = byId.get(id);
+        return entry == null ? null : entry.getAddon();
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * @return the milliseconds since the epoch of the last modified addon, 0 if empty
+     */
+    public synchronized long getLastModified() {
+        return lastModified;
+    }
+    
+    /**
+     * Answers the search as {@link MetaSearch#search()} would, the page index is the offset of the first addon.
+     *
+     * @param search the search
+     * @return the list of addons found
+     */
+    public synchronized List<Addon> search(MetaSearch search) {
+        List<Addon> addons = new ArrayList<>();
+        for(int id : searchIds(search))
+            addons.add(byId.get(id).getAddon());
+        return addons;
+    }
+    
+    /**
+     * Answers the search without reading the addons, such as for autocomplete.
+     *
+     * @param search the search
+     * @return the ids of the addons found
+     * @see #search(MetaSearch)
+     */
+    public synchronized int[] searchIds(MetaSearch search) {
+        BitSet candidates = null;
+        if (search.getSearchFilter() != null)
+            for(String word : tokenize(search.getSearchFilter())) {
+                BitSet matches = matches(word);
+                if (candidates == null)
+                    candidates = matches;
+                else
+                    candidates.and(matches);
+            }
+        int[] order = order(search.getSort());
+        int count = entries.size();
+        boolean descending = search.getSortDescending();
+        int skip = search.getPageIndex(), pageSize = search.getPageSize();
+        int[] page = new int[Math.max(0, Math.min(pageSize, count))];
+        int size = 0;
+        for(int i = 0; i < count && size < page.length; i++) {
+            int ordinal = order[descending ? count - 1 - i : i];
+            if (candidates != null && !candidates.get(ordinal))
+                continue;
+            Entry entry = entries.get(ordinal);
+            if (!entry.matches(search))
+                continue;
+            if (skip > 0)
+                skip--;
+            else
+                page[size++] = entry.id;
+        }
+        return Arrays.copyOf(page, size);
+    }
+    
+    /**
+     * @return the entries with any token starting with the word
+     */
+    private BitSet matches(String word) {
+        if (tokens == null) {
+            tokens = new TreeMap<>();
+            for(Entry entry : entries)
+                post(entry);
+        }
+        BitSet matches = new BitSet(entries.size());
+        for(Map.Entry<String, Postings> token : tokens.tailMap(word, true).entrySet()) {
+            if (!token.getKey().startsWith(word))
+                break;
+            token.getValue().addTo(matches);
+        }
+        return matches;
+    }
+    
+    private int[] order(MetaSearch.SortMethod sort) {
+        int[] order = orders[sort.ordinal()];
+        if (order == null) {
+            Comparator<Entry> comparator = COMPARATORS.get(sort.ordinal());
+            order = orders[sort.ordinal()] = IntStream.range(0, entries.size()).boxed().sorted((a, b) -> comparator.compare(entries.get(a), entries.get(b))).mapToInt(Integer::intValue).toArray();
+        }
+        return order;
+    }
+    
+    /**
+     * Inserts the entry into the words and the sort orders built.
+     *
+     * @param count the number of entries in the sort orders, without the entry
+     */
+    private void index(Entry entry, int count) {
+        for(MetaSearch.SortMethod sort : SORTS) {
+            int[] order = orders[sort.ordinal()];
+            if (order == null)
+                continue;
+            if (order.length == count)
+                order = orders[sort.ordinal()] = Arrays.copyOf(order, count + (count >> 1) + 1);
+            int position = position(sort, order, count, entry);
+            System.arraycopy(order, position, order, position + 1, count - position);
+            order[position] = entry.ordinal;
+        }
+        if (tokens != null)
+            post(entry);
+    }
+    
+    /**
+     * Removes the entry from the words and the sort orders built, the entry must still be at its ordinal.
+     */
+    private void unindex(Entry entry) {
+        int count = entries.size();
+        for(MetaSearch.SortMethod sort : SORTS) {
+            int[] order = orders[sort.ordinal()];
+            if (order == null)
+                continue;
+            int position = position(sort, order, count, entry);
+            System.arraycopy(order, position + 1, order, position, count - position - 1);
+        }
+        if (tokens != null)
+            for(String token : entry.tokens()) {
+                Postings postings = tokens.get(token);
+                if (postings != null && postings.remove(entry.ordinal) && postings.isEmpty())
+                    tokens.remove(token);
+            }
+    }
+    
+    private void post(Entry entry) {
+        for(String token : entry.tokens())
+            tokens.computeIfAbsent(token, t -> new Postings()).add(entry.ordinal);
+    }
+    
+    /**
+     * @return the position of the first of the {@code count} entries of the order not sorting before the entry
+     */
+    private int position(MetaSearch.SortMethod sort, int[] order, int count, Entry entry) {
+        Comparator<Entry> comparator = COMPARATORS.get(sort.ordinal());
+        int low = 0, high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(entries.get(order[middle]), entry) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+    
+    private static Comparator<Entry> comparator(MetaSearch.SortMethod sort) {
+        switch (sort) {
+            case FEATURED:
+                return Comparator.<Entry, Boolean>comparing(entry -> !entry.featured).thenComparingInt(entry -> entry.gamePopularityRank);
+            case POPULARITY:
+                return Comparator.comparingDouble(entry -> entry.popularityScore);
+            case LAST_UPDATED:
+                return Comparator.comparingLong(entry -> entry.dateModified);
+            case NAME:
+                return Comparator.comparing(entry -> entry.name, String.CASE_INSENSITIVE_ORDER);
+            case AUTHOR:
+                return Comparator.comparing(entry -> entry.authors.length == 0 ? "" : entry.authors[0], String.CASE_INSENSITIVE_ORDER);
+            case TOTAL_DOWNLOADS:
+                return Comparator.comparingDouble(entry -> entry.downloadCount);
+            case CATEGORY:
+                return Comparator.comparing(entry -> entry.category, String.CASE_INSENSITIVE_ORDER);
+            case GAME_VERSION:
+                return Comparator.comparing(entry -> entry.gameVersionPadded);
+            default:
+                throw new IllegalArgumentException("Unknown sort: " + sort);
+        }
+    }
+    
+    /**
+     * Writes the snapshot to a temporary file, then moves it to the path.
+     *
+     * @param path the path
+     * @throws IOException if the snapshot failed to be written
+     */
+    public synchronized void save(Path path) throws IOException {
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for(Entry entry : entries)
+                    entry.write(out);
+            }
+            CurseMetaAPI.InternetUtils.move(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * Maps the snapshot, the addons are read from the mapped file once returned.
+     *
+     * @param path the path
+     * @return the index
+     * @throws IOException if the snapshot failed to be read or is not a snapshot of this version
+     */
+    public static OfflineAddonIndex load(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC)
+            throw new IOException("Not an addon index snapshot: " + path);
+        int version = buffer.getInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported addon index snapshot version " + version + ": " + path);
+        OfflineAddonIndex index = create();
+        int count = buffer.getInt();
+        for(int i = 0; i < count; i++) {
+            Entry entry = new Entry(buffer);
+            entry.ordinal = index.entries.size();
+            index.byId.put(entry.id, entry);
+            index.entries.add(entry);
+            index.lastModified = Math.max(index.lastModified, entry.dateModified);
+        }
+        return index;
+    }
+    
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null)
+            return tokens;
+        int start = -1;
+        for(int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0)
+                start = i;
+            else if (!letter && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+    
+    private static long dateModified(Addon addon) {
+        try {
+            return addon.dateModified == null ? 0 : addon.getDateModifiedMillis();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * The sorted ordinals of the entries of one word.
+     */
+    private static class Postings {
+        private int[] ordinals = new int[2];
+        private int size;
+        
+        void add(int ordinal) {
+            int position = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (position >= 0)
+                return;
+            position = -position - 1;
+            if (size == ordinals.length)
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            System.arraycopy(ordinals, position, ordinals, position + 1, size - position);
+            ordinals[position] = ordinal;
+            size++;
+        }
+        
+        /**
+         * @return whether the ordinal is removed, false if absent
+         */
+        boolean remove(int ordinal) {
+            int position = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (position < 0)
+                return false;
+            System.arraycopy(ordinals, position + 1, ordinals, position, size - position - 1);
+            size--;
+            return true;
+        }
+        
+        boolean isEmpty() {
+            return size == 0;
+        }
+        
+        void addTo(BitSet set) {
+            for(int i = 0; i < size; i++)
+                set.set(ordinals[i]);
+        }
+    }
+    
+    /**
+     * The fields searched and sorted on, and the addon or its json if loaded and not read yet.
+     */
+    private static class Entry {
+        private final int id;
+        private final int gameId;
+        private final int sectionId;
+        private final String name;
+        private final String slug;
+        private final String[] authors;
+        private final int[] categoryIds;
+        private final String category;
+        private final String[] gameVersions;
+        private final String gameVersionPadded;
+        private final long dateModified;
+        private final double downloadCount;
+        private final float popularityScore;
+        private final int gamePopularityRank;
+        private final boolean featured;
+        private int ordinal;
+        private Addon addon;
+        private final ByteBuffer json;
+        
+        Entry(Addon addon) {
+            this.id = addon.id;
+            this.gameId = addon.gameId;
+            this.sectionId = addon.categorySection == null ? 0 : addon.categorySection.gameCategoryId;
+            this.name = addon.name == null ? "" : addon.name;
+            this.slug = addon.slug == null ? "" : addon.slug;
+            this.authors = addon.authors == null ? new String[0] : addon.authors.stream().map(author -> author.name == null ? "" : author.name).toArray(String[]::new);
+            this.categoryIds = addon.categories == null ? new int[0] : addon.categories.stream().mapToInt(category -> category.categoryId).toArray();
+            this.category = addon.categories == null ? "" : addon.categories.stream().filter(category -> category.categoryId == addon.primaryCategoryId).map(category -> category.name).filter(Objects::nonNull).findFirst().orElse("");
+            Set<String> gameVersions = new LinkedHashSet<>();
+            String gameVersionPadded = "";
+            if (addon.gameVersionLatestFiles != null)
+                for(Addon.AddonGameVersionFiles files : addon.gameVersionLatestFiles)
+                    if (files.gameVersion != null)
+                        gameVersions.add(files.gameVersion);
+            if (addon.latestFiles != null)
+                for(Addon.AddonLatestFiles file : addon.latestFiles) {
+                    if (file.gameVersion != null)
+                        gameVersions.addAll(file.gameVersion);
+                    if (file.sortableGameVersion != null)
+                        for(Addon.AddonLatestFiles.SortableGameVersion version : file.sortableGameVersion)
+                            if (version.gameVersionPadded != null && version.gameVersionPadded.compareTo(gameVersionPadded) > 0)
+                                gameVersionPadded = version.gameVersionPadded;
+                }
+            this.gameVersions = gameVersions.toArray(new String[0]);
+            this.gameVersionPadded = gameVersionPadded;
+            this.dateModified = dateModified(addon);
+            this.downloadCount = addon.downloadCount;
+            this.popularityScore = addon.popularityScore;
+            this.gamePopularityRank = addon.gamePopularityRank;
+            this.featured = addon.isFeatured;
+            this.addon = addon;
+            this.json = null;
+        }
+        
+        Entry(ByteBuffer buffer) {
+            this.id = buffer.getInt();
+            this.gameId = buffer.getInt();
+            this.sectionId = buffer.getInt();
+            this.name = readString(buffer);
+            this.slug = readString(buffer);
+            this.authors = new String[buffer.getInt()];
+            for(int i = 0; i < authors.length; i++)
+                authors[i] = readString(buffer);
+            this.categoryIds = new int[buffer.getInt()];
+            for(int i = 0; i < categoryIds.length; i++)
+                categoryIds[i] = buffer.getInt();
+            this.category = readString(buffer);
+            this.gameVersions = new String[buffer.getInt()];
+            for(int i = 0; i < gameVersions.length; i++)
+                gameVersions[i] = readString(buffer).intern();
+            this.gameVersionPadded = readString(buffer).intern();
+            this.dateModified = buffer.getLong();
+            this.downloadCount = buffer.getDouble();
+            this.popularityScore = buffer.getFloat();
+            this.gamePopularityRank = buffer.getInt();
+            this.featured = buffer.get() != 0;
+            int length = buffer.getInt();
+            ByteBuffer json = buffer.slice();
+            json.limit(length);
+            this.json = json;
+            buffer.position(buffer.position() + length);
+        }
+        
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(id);
+            out.writeInt(gameId);
+            out.writeInt(sectionId);
+            writeString(out, name);
+            writeString(out, slug);
+            out.writeInt(authors.length);
+            for(String author : authors)
+                writeString(out, author);
+            out.writeInt(categoryIds.length);
+            for(int categoryId : categoryIds)
+                out.writeInt(categoryId);
+            writeString(out, category);
+            out.writeInt(gameVersions.length);
+            for(String gameVersion : gameVersions)
+                writeString(out, gameVersion);
+            writeString(out, gameVersionPadded);
+            out.writeLong(dateModified);
+            out.writeDouble(downloadCount);
+            out.writeFloat(popularityScore);
+            out.writeInt(gamePopularityRank);
+            out.writeBoolean(featured);
+            byte[] json = this.json == null ? CurseMetaAPI.GSON.toJson(addon).getBytes(StandardCharsets.UTF_8) : getJson();
+            out.writeInt(json.length);
+            out.write(json);
+        }
+        
+        Set<String> tokens() {
+            Set<String> tokens = new HashSet<>(tokenize(name));
+            tokens.addAll(tokenize(slug));
+            for(String author : authors)
+                tokens.addAll(tokenize(author));
+            return tokens;
+        }
+        
+        boolean matches(MetaSearch search) {
+            if (gameId != search.getGameId() || search.getSectionId() != null && sectionId != search.getSectionId())
+                return false;
+            if (search.getCategoryId() != null && Arrays.stream(categoryIds).noneMatch(categoryId -> categoryId == search.getCategoryId()))
+                return false;
+            return search.getGameVersion() == null || Arrays.asList(gameVersions).contains(search.getGameVersion());
+        }
+        
+        Addon getAddon() {
+            if (addon == null)
+                addon = CurseMetaAPI.GSON.fromJson(new String(getJson(), StandardCharsets.UTF_8), Addon.class);
+            return addon;
+        }
+        
+        private byte[] getJson() {
+            ByteBuffer json = this.json.duplicate();
+            byte[] bytes = new byte[json.remaining()];
+            json.get(bytes);
+            return bytes;
+        }
+        
+        private static String readString(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        private static void writeString(DataOutputStream out, String string) throws IOException {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
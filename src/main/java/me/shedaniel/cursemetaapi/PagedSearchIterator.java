@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Iterates every page of a search, the next page is requested in the background once a page is read.
+ * Stops at the first page shorter than the page size, or at the limit.
+ */
+class PagedSearchIterator implements Iterator<CurseMetaAPI.Addon> {
+    private final CurseMetaClient client;
+    private final MetaSearch search;
+    private final int limit;
+    private final int pageSize;
+    private int nextIndex;
+    private int returned;
+    private Iterator<CurseMetaAPI.Addon> page = Collections.emptyIterator();
+    private CompletableFuture<List<CurseMetaAPI.Addon>> nextPage;
+    
+    PagedSearchIterator(CurseMetaClient client, MetaSearch search, int limit) {
+        this.client = client;
+        this.search = search.copy();
+        this.limit = limit;
+        this.pageSize = Math.max(1, search.getPageSize());
+        this.nextIndex = search.getPageIndex();
+        if (limit > 0)
+            requestNextPage();
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (returned >= limit) {
+            if (nextPage != null) {
+                nextPage.cancel(false);
+                nextPage = null;
+            }
+            return false;
+        }
+        while (!page.hasNext()) {
+            if (nextPage == null)
+                return false;
+            List<CurseMetaAPI.Addon> addons = nextPage.join();
+            nextPage = null;
+            if (addons.size() >= pageSize && returned + addons.size() < limit)
+                requestNextPage();
+            page = addons.iterator();
+        }
+        return true;
+    }
+    
+    @Override
+    public CurseMetaAPI.Addon next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        returned++;
+        return page.next();
+    }
+    
+    private void requestNextPage() {
+        nextPage = client.search(search.copy().setPageIndex(nextIndex).setPageSize(pageSize));
+        nextIndex += pageSize;
+    }
+}
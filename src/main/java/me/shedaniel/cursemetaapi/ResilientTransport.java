@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Transport} limiting the rate of the requests, retrying the requests failed with jittered exponential
+ * backoff and failing fast while a host keeps failing.
+ * <p>
+ * Requests failed to be sent and responses of 429, 500, 502, 503 and 504 are retried, honouring Retry-After.
+ * The last response is returned if every retry failed. After {@link #getFailureThreshold()} requests in a row to a
+ * host failed, with every retry failed, requests to it throw {@link CircuitOpenException} for the open duration, then
+ * one request is let through to close the circuit again.
+ */
+public class ResilientTransport implements Transport {
+    private final Transport transport;
+    private double permitsPerSecond;
+    private int burst;
+    private double permits;
+    private long refilledAt = System.nanoTime();
+    private int maxRetries;
+    private long initialBackoffMillis;
+    private long maxBackoffMillis;
+    private int failureThreshold;
+    private long openMillis;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+    
+    private ResilientTransport(Transport transport) {
+        this.transport = transport;
+        this.maxRetries = 3;
+        this.initialBackoffMillis = 250;
+        this.maxBackoffMillis = 10_000;
+        this.failureThreshold = 5;
+        this.openMillis = 30_000;
+    }
+    
+    /**
+     * @return the transport wrapping the current {@link CurseMetaAPI.InternetUtils#getTransport()}, so it can be set as the default transport
+     */
+    public static ResilientTransport create() {
+        return create(CurseMetaAPI.InternetUtils.getTransport());
+    }
+    
+    public static ResilientTransport create(Transport transport) {
+        return new ResilientTransport(transport);
+    }
+    
+    public Transport getTransport() {
+        return transport;
+    }
+    
+    /**
+     * @param permitsPerSecond the requests per second, 0 for unlimited, defaults to 0
+     * @param burst            the requests sent at once after being idle
+     */
+    public synchronized ResilientTransport setRateLimit(double permitsPerSecond, int burst) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.permits = this.burst;
+        this.refilledAt = System.nanoTime();
+        return this;
+    }
+    
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+    
+    /**
+     * @param maxRetries the retries after the first attempt, defaults to 3
+     */
+    public ResilientTransport setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+    
+    /**
+     * @param initialBackoff the maximum wait before the first retry, doubled for every retry, defaults to 250ms
+     * @param maxBackoff     the maximum wait before a retry, a longer Retry-After is not waited for, defaults to 10s
+     */
+    public ResilientTransport setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+        this.initialBackoffMillis = unit.toMillis(initialBackoff);
+        this.maxBackoffMillis = unit.toMillis(maxBackoff);
+        return this;
+    }
+    
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+    
+    /**
+     * @param failureThreshold the requests failed in a row, after their retries, opening the circuit of a host, defaults to 5
+     * @param openDuration     the duration the circuit stays open, defaults to 30s
+     */
+    public ResilientTransport setCircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = unit.toMillis(openDuration);
+        return this;
+    }
+    
+    /**
+     * @param host the host
+     * @return whether requests to the host fail fast
+     */
+    public boolean isOpen(String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit != null && circuit.openUntil > System.currentTimeMillis();
+    }
+    
+    @Override
+    public Response execute(Request request) throws IOException {
+        String host = request.getUrl().getHost();
+        Circuit circuit = circuits.computeIfAbsent(host, key -> new Circuit());
+        acquirePermit();
+        boolean probe = circuit.acquire(host);
+        boolean recorded = false;
+        try {
+            for(int attempt = 0; ; attempt++) {
+                if (attempt > 0)
+                    acquirePermit();
+                Response response;
+                try {
+                    response = transport.execute(request);
+                } catch (IOException e) {
+                    long backoff = backoff(attempt, null);
+                    if (attempt >= maxRetries || backoff < 0) {
+                        recorded = true;
+                        circuit.failed();
+                        throw e;
+                    }
+                    sleep(backoff);
+                    continue;
+                } catch (RuntimeException e) {
+                    recorded = true;
+                    circuit.failed();
+                    throw e;
+                }
+                if (!isRetryable(response.getStatus())) {
+                    recorded = true;
+                    circuit.succeeded();
+                    return response;
+                }
+                long backoff = backoff(attempt, response.getHeader("Retry-After"));
+                if (attempt >= maxRetries || backoff < 0) {
+                    recorded = true;
+                    circuit.failed();
+                    return response;
+                }
+                response.close();
+                sleep(backoff);
+            }
+        } finally {
+            // Interrupted between the attempts, the request neither failed nor succeeded
+            if (probe && !recorded)
+                circuit.released();
+        }
+    }
+    
+    static boolean isRetryable(int status) {
+        return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+    
+    /**
+     * @return the wait before the retry, the Retry-After if any, otherwise a random wait up to the exponential backoff, -1 if too long
+     */
+    private long backoff(int attempt, String retryAfter) {
+        if (retryAfter != null) {
+            long millis = parseRetryAfter(retryAfter);
+            if (millis >= 0)
+                return millis > maxBackoffMillis ? -1 : millis;
+        }
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+    
+    private static long parseRetryAfter(String retryAfter) {
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            return Math.max(0, ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Takes a permit of the token bucket, or reserves the next one and waits for it.
+     */
+    private void acquirePermit() throws InterruptedIOException {
+        long waitNanos;
+        synchronized (this) {
+            if (permitsPerSecond <= 0)
+                return;
+            long now = System.nanoTime();
+            permits = Math.min(burst, permits + (now - refilledAt) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            refilledAt = now;
+            permits--;
+            waitNanos = permits >= 0 ? 0 : (long) (-permits * TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        }
+        sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+    
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+    
+    private class Circuit {
+        private int failures;
+        private volatile long openUntil;
+        private boolean probing;
+        
+        /**
+         * @return whether the request is the probe of the half open circuit
+         */
+        synchronized boolean acquire(String host) throws CircuitOpenException {
+            if (failures < failureThreshold)
+                return false;
+            long now = System.currentTimeMillis();
+            if (now < openUntil || probing)
+                throw new CircuitOpenException(host, Math.max(openUntil, now));
+            // Half open, only this request is let through until it completes
+            probing = true;
+            return true;
+        }
+        
+        synchronized void released() {
+            probing = false;
+        }
+        
+        synchronized void succeeded() {
+            failures = 0;
+            probing = false;
+        }
+        
+        synchronized void failed() {
+            failures++;
+            probing = false;
+            if (failures >= failureThreshold)
+                openUntil = System.currentTimeMillis() + openMillis;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * An in-memory cache of the responses of a {@link CurseMetaClient}, see {@link CurseMetaClient#setCache(ResponseCache)}.
+ * <p>
+ * Entries are kept for the ttl of their endpoint and the least recently used entries are evicted above the
+ * maximum of entries. Concurrent misses of the same entry share one request. Failed requests are not cached.
+ * <p>
+ * Expired entries stay until evicted with the ETag or Last-Modified of their response, the next request of the entry
+ * is made conditional on it and the expired value is reused if the api answers 304, or if the response carries the
+ * same validator, such as a response served by {@link DiskCacheTransport}.
+ * <p>
+ * The cached objects are shared between the callers and must not be modified.
+ */
+public class ResponseCache {
+    /**
+     * The ttls in nanoseconds by the ordinal of the endpoint, replaced as a whole so readers never lock.
+     */
+    private volatile long[] ttls = new long[Endpoint.values().length];
+    private int maxEntries;
+    private final Map<Endpoint, IntObjectMap<Entry>> entries = new EnumMap<>(Endpoint.class);
+    /**
+     * The sentinel of the entries from the least to the most recently used, guarded by the entries.
+     */
+    private final Entry lru = new Entry(null, 0, null, null, 0, null);
+    private int size;
+    private final Map<Key, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    
+    private ResponseCache() {
+        this.maxEntries = 10000;
+        for(Endpoint endpoint : Endpoint.values()) {
+            ttls[endpoint.ordinal()] = endpoint.defaultTtl;
+            entries.put(endpoint, new IntObjectMap<>());
+        }
+        lru.previous = lru.next = lru;
+    }
+    
+    public static ResponseCache create() {
+        return new ResponseCache();
+    }
+    
+    public long getTtl(Endpoint endpoint, TimeUnit unit) {
+        return unit.convert(ttls[endpoint.ordinal()], TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * @param endpoint the endpoint
+     * @param ttl      the time the entries of the endpoint are kept, 0 to not cache the endpoint
+     * @param unit     the unit of the ttl
+     */
+    public ResponseCache setTtl(Endpoint endpoint, long ttl, TimeUnit unit) {
+        synchronized (entries) {
+            long[] ttls = this.ttls.clone();
+            ttls[endpoint.ordinal()] = unit.toNanos(ttl);
+            this.ttls = ttls;
+        }
+        return this;
+    }
+    
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+    
+    /**
+     * @param maxEntries the maximum of entries kept, defaults to 10000
+     */
+    public ResponseCache setMaxEntries(int maxEntries) {
+        if (maxEntries < 0)
+            throw new IllegalArgumentException("maxEntries must not be negative: " + maxEntries);
+        synchronized (entries) {
+            this.maxEntries = maxEntries;
+            evict();
+        }
+        return this;
+    }
+    
+    /**
+     * Returns the cached value if present, a hit, otherwise a miss.
+     *
+     * @param endpoint the endpoint
+     * @param id       the id of the entry
+     * @return the cached value, null if absent or expired
+     */
+    public <T> T getIfPresent(Endpoint endpoint, int id) {
+        T cached = lookup(endpoint, id);
+        (cached == null ? misses : hits).incrementAndGet();
+        return cached;
+    }
+    
+    /**
+     * Returns the cached value if present, a hit, otherwise loads the value, a miss.
+     * The loads of the same entry at the same time are coalesced into one.
+     *
+     * @param endpoint the endpoint
+     * @param id       the id of the entry
+     * @param loader   the loader of the value, completes exceptionally if the request failed
+     * @return the future of the value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> get(Endpoint endpoint, int id, Supplier<CompletableFuture<T>> loader) {
+        T cached = lookup(endpoint, id);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+        Key key = new Key(endpoint, id);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<?> loading = inFlight.putIfAbsent(key, future);
+        if (loading != null) {
+            coalesced.incrementAndGet();
+            return (CompletableFuture<T>) loading;
+        }
+        misses.incrementAndGet();
+        loader.get().whenComplete((value, throwable) -> {
+            if (throwable == null)
+                put(endpoint, id, value);
+            inFlight.remove(key, future);
+            if (throwable == null)
+                future.complete(value);
+            else
+                future.completeExceptionally(throwable);
+        });
+        return future;
+    }
+    
+    /**
+     * @param endpoint the endpoint
+     * @param id       the id of the entry
+     * @param value    the value, null values are not cached
+     */
+    public void put(Endpoint endpoint, int id, Object value) {
+        put(endpoint, id, value, null);
+    }
+    
+    /**
+     * @param validator the ETag or Last-Modified of the response of the value, keeps the validator of the same value if null
+     */
+    void put(Endpoint endpoint, int id, Object value, String validator) {
+        long ttl = ttls[endpoint.ordinal()];
+        if (value == null || ttl <= 0)
+            return;
+        synchronized (entries) {
+            IntObjectMap<Entry> map = entries.get(endpoint);
+            Entry previous = map.get(id);
+            if (previous != null) {
+                if (validator == null && previous.value == value)
+                    validator = previous.validator;
+                unlink(previous);
+            } else
+                size++;
+            Entry entry = new Entry(endpoint, id, value, validator, System.nanoTime() + ttl, lru.previous);
+            map.put(id, entry);
+            evict();
+        }
+    }
+    
+    /**
+     * @return the validator of the entry, expired or not, null if absent or without one
+     */
+    String getValidator(Endpoint endpoint, int id) {
+        synchronized (entries) {
+            Entry entry = entries.get(endpoint).get(id);
+            return entry == null ? null : entry.validator;
+        }
+    }
+    
+    /**
+     * Renews the entry if its validator matches, expired or not.
+     *
+     * @param validator the ETag or Last-Modified of the response
+     * @return the value of the entry, null if absent or the validator does not match
+     */
+    @SuppressWarnings("unchecked")
+    <T> T revalidate(Endpoint endpoint, int id, String validator) {
+        synchronized (entries) {
+            Entry entry = entries.get(endpoint).get(id);
+            if (entry == null || entry.validator == null || !entry.validator.equals(validator))
+                return null;
+            entry.expiresAt = System.nanoTime() + ttls[endpoint.ordinal()];
+            touch(entry);
+            return (T) entry.value;
+        }
+    }
+    
+    public void invalidate(Endpoint endpoint, int id) {
+        synchronized (entries) {
+            Entry entry = entries.get(endpoint).remove(id);
+            if (entry != null) {
+                unlink(entry);
+                size--;
+            }
+        }
+    }
+    
+    public void clear() {
+        synchronized (entries) {
+            for(IntObjectMap<Entry> map : entries.values())
+                map.clear();
+            lru.previous = lru.next = lru;
+            size = 0;
+        }
+    }
+    
+    /**
+     * @return the number of entries, including the expired entries not evicted yet
+     */
+    public int size() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+    
+    public long getHits() {
+        return hits.get();
+    }
+    
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    /**
+     * @return the number of misses that waited for the request of another miss
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+    
+    /**
+     * @return the number of entries evicted for exceeding the maximum of entries
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> T lookup(Endpoint endpoint, int id) {
+        synchronized (entries) {
+            Entry entry = entries.get(endpoint).get(id);
+            if (entry == null || entry.isExpired(System.nanoTime()))
+                return null;
+            touch(entry);
+            return (T) entry.value;
+        }
+    }
+    
+    private void touch(Entry entry) {
+        unlink(entry);
+        entry.link(lru.previous);
+    }
+    
+    private static void unlink(Entry entry) {
+        entry.previous.next = entry.next;
+        entry.next.previous = entry.previous;
+    }
+    
+    private void evict() {
+        while (size > maxEntries) {
+            Entry eldest = lru.next;
+            unlink(eldest);
+            entries.get(eldest.endpoint).remove(eldest.id);
+            size--;
+            evictions.incrementAndGet();
+        }
+    }
+    
+    public enum Endpoint {
+        /**
+         * Addons by the addon id.
+         */
+        ADDON(TimeUnit.MINUTES.toNanos(5)),
+        /**
+         * Files by the file id.
+         */
+        ADDON_FILE(TimeUnit.HOURS.toNanos(1)),
+        /**
+         * File lists by the addon id.
+         */
+        ADDON_FILES(TimeUnit.MINUTES.toNanos(5)),
+        /**
+         * Descriptions by the addon id.
+         */
+        DESCRIPTION(TimeUnit.MINUTES.toNanos(30)),
+        /**
+         * Changelogs by the file id.
+         */
+        CHANGELOG(TimeUnit.HOURS.toNanos(1));
+        private final long defaultTtl;
+        
+        Endpoint(long defaultTtl) {
+            this.defaultTtl = defaultTtl;
+        }
+    }
+    
+    private static class Key {
+        private final Endpoint endpoint;
+        private final int id;
+        
+        Key(Endpoint endpoint, int id) {
+            this.endpoint = endpoint;
+            this.id = id;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return id == key.id && endpoint == key.endpoint;
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * endpoint.hashCode() + id;
+        }
+    }
+    
+    /**
+     * An entry linked in the order of use, the most recently used before the sentinel.
+     */
+    private static class Entry {
+        private final Endpoint endpoint;
+        private final int id;
+        private final Object value;
+        private final String validator;
+        private long expiresAt;
+        private Entry previous;
+        private Entry next;
+        
+        Entry(Endpoint endpoint, int id, Object value, String validator, long expiresAt, Entry after) {
+            this.endpoint = endpoint;
+            this.id = id;
+            this.value = value;
+            this.validator = validator;
+            this.expiresAt = expiresAt;
+            if (after != null)
+                link(after);
+        }
+        
+        void link(Entry after) {
+            previous = after;
+            next = after.next;
+            after.next = this;
+            next.previous = this;
+        }
+        
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sends the http requests of the api, see {@link HttpURLConnectionTransport} for the default transport.
+ */
+public interface Transport {
+    /**
+     * Sends the request, the response must be closed to release the connection.
+     *
+     * @param request the request
+     * @return the response, with any status code
+     * @throws IOException if the request could not be sent
+     */
+    Response execute(Request request) throws IOException;
+    
+    class Request {
+        private final String method;
+        private final URL url;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private final byte[] body;
+        
+        private Request(String method, URL url, byte[] body) {
+            this.method = method;
+            this.url = url;
+            this.body = body;
+        }
+        
+        public static Request get(URL url) {
+            return new Request("GET", url, null);
+        }
+        
+        /**
+         * @param url  the url
+         * @param json the json body, sent as utf-8
+         */
+        public static Request post(URL url, byte[] json) {
+            return new Request("POST", url, json).setHeader("Content-Type", "application/json; charset=UTF-8");
+        }
+        
+        public String getMethod() {
+            return method;
+        }
+        
+        public URL getUrl() {
+            return url;
+        }
+        
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+        
+        /**
+         * @return a request with the same method, url, headers and body, so headers can be added without changing
+         * this request
+         */
+        public Request copy() {
+            Request copy = new Request(method, url, body);
+            copy.headers.putAll(headers);
+            return copy;
+        }
+        
+        public Request setHeader(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+        
+        /**
+         * @return the body, null if no body
+         */
+        public byte[] getBody() {
+            return body;
+        }
+    }
+    
+    interface Response extends Closeable {
+        int getStatus();
+        
+        /**
+         * @param name the header name, case insensitive
+         * @return the header value, null if absent
+         */
+        String getHeader(String name);
+        
+        /**
+         * @return the body, already decompressed
+         */
+        InputStream getBody();
+        
+        /**
+         * Closes the response if the status is not successful.
+         *
+         * @return this response
+         * @throws HttpStatusException if the status is not successful
+         */
+        default Response ensureSuccess() throws IOException {
+            int status = getStatus();
+            if (status < 200 || status >= 300) {
+                close();
+                throw new HttpStatusException(status);
+            }
+            return this;
+        }
+        
+        /**
+         * Drains and closes the body, so the connection can be reused.
+         */
+        @Override
+        void close() throws IOException;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class AddonIndexTest {
+    private static CurseMetaAPI.Addon addon(String json) {
+        return CurseMetaAPI.GSON.fromJson(json, CurseMetaAPI.Addon.class);
+    }
+    
+    @Test
+    public void looksUpAddonsAndFiles() throws Exception {
+        CurseMetaAPI.Addon jei = addon("{\"id\":238222,\"slug\":\"jei\",\"latestFiles\":[{\"id\":11,\"fileName\":\"jei.jar\"}],\"gameVersionLatestFiles\":[{\"projectFileId\":12}]}");
+        CurseMetaAPI.Addon rei = addon("{\"id\":310111,\"slug\":\"roughly-enough-items\",\"latestFiles\":[{\"id\":21}]}");
+        AddonIndex index = AddonIndex.of(Arrays.asList(jei, rei));
+        assertEquals(2, index.size());
+        assertSame(jei, index.getAddon(238222));
+        assertSame(rei, index.getAddonBySlug("roughly-enough-items"));
+        assertSame(jei, index.getAddonByFileId(12));
+        assertEquals("jei.jar", index.getLatestFile(11).fileName);
+        assertNull(index.getAddon(1));
+        
+        CurseMetaAPI.Addon updated = addon("{\"id\":238222,\"slug\":\"just-enough-items\",\"latestFiles\":[{\"id\":13}]}");
+        index.add(updated);
+        assertEquals(2, index.size());
+        assertNull(index.getAddonBySlug("jei"));
+        assertNull(index.getAddonByFileId(11));
+        assertNull(index.getLatestFile(11));
+        assertSame(updated, index.getAddonByFileId(13));
+        
+        FakeTransport transport = FakeTransport.create().addAddons(new StringReader("[{\"id\":1,\"gameId\":432,\"name\":\"One\",\"slug\":\"one\"},{\"id\":2,\"gameId\":432,\"name\":\"Two\",\"slug\":\"two\"}]"));
+        CurseMetaClient client = CurseMetaClient.create().setApi("http://fake.invalid").setTransport(transport);
+        assertEquals("Two", AddonIndex.of(client.search(MetaSearch.create(432)).get()).getAddonBySlug("two").name);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class BinarySnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void roundTripsAddons() throws Exception {
+        CurseMetaAPI.Addon addon;
+        try (Reader reader = new InputStreamReader(BinarySnapshotTest.class.getResourceAsStream("/addon.json"), StandardCharsets.UTF_8)) {
+            addon = CurseMetaAPI.GSON.fromJson(reader, CurseMetaAPI.Addon.class);
+        }
+        CurseMetaAPI.Addon other = CurseMetaAPI.GSON.fromJson("{\"id\":3,\"name\":\"\u65e5\u672c\u8a9e\",\"downloadCount\":12.5}", CurseMetaAPI.Addon.class);
+        CurseMetaAPI.Addon replaced = CurseMetaAPI.GSON.fromJson("{\"id\":3,\"name\":\"Replaced\"}", CurseMetaAPI.Addon.class);
+        Path path = folder.getRoot().toPath().resolve("addons.bin");
+        BinarySnapshot.writeAddons(path, Arrays.asList(replaced, addon, other));
+        
+        BinarySnapshot.Addons snapshot = BinarySnapshot.openAddons(path);
+        assertEquals(2, snapshot.size());
+        int index = snapshot.indexOf(addon.id);
+        assertEquals(1, index);
+        assertEquals(addon.name, snapshot.getName(index));
+        assertEquals(addon.getDateModifiedMillis(), snapshot.getDateModifiedMillis(index));
+        assertEquals(addon.downloadCount, snapshot.getDownloadCount(index), 0);
+        assertEquals(CurseMetaAPI.GSON.toJson(addon), CurseMetaAPI.GSON.toJson(snapshot.get(index)));
+        assertEquals("\u65e5\u672c\u8a9e", snapshot.getById(3).name);
+        assertEquals(Long.MIN_VALUE, snapshot.getDateModifiedMillis(snapshot.indexOf(3)));
+        assertNull(snapshot.getById(4));
+        assertEquals(-1, snapshot.indexOf(4));
+        assertTrue(Files.size(path) < CurseMetaAPI.GSON.toJson(Arrays.asList(addon, other)).length());
+    }
+    
+    @Test
+    public void roundTripsFiles() throws Exception {
+        CurseMetaAPI.AddonFile file = CurseMetaAPI.GSON.fromJson("{\"id\":11,\"fileName\":\"one.jar\",\"fileDate\":\"2019-01-02T03:04:05.5Z\",\"fileLength\":100," +
+                                                                 "\"packageFingerprint\":-5000000000,\"gameVersion\":[\"1.12.2\",\"Forge\"],\"dependencies\":[{\"addonId\":2,\"type\":3}]," +
+                                                                 "\"installMetadata\":{\"big\":123456789012345678901234567890,\"fraction\":0.1,\"list\":[null,true]}}", CurseMetaAPI.AddonFile.class);
+        Path path = folder.getRoot().toPath().resolve("files.bin");
+        BinarySnapshot.writeFiles(path, Collections.singletonList(file));
+        
+        BinarySnapshot.AddonFiles snapshot = BinarySnapshot.openFiles(path);
+        assertEquals(11, snapshot.getId(0));
+        assertEquals("one.jar", snapshot.getFileName(0));
+        assertEquals(100, snapshot.getFileLength(0));
+        assertEquals(Iso8601.parseMillis(file.fileDate), snapshot.getFileDateMillis(0));
+        assertEquals(CurseMetaAPI.GSON.toJson(file), CurseMetaAPI.GSON.toJson(snapshot.get(0)));
+        try {
+            BinarySnapshot.openAddons(path);
+            fail();
+        } catch (IOException expected) {
+        }
+        Files.write(path, Arrays.copyOf(Files.readAllBytes(path), 40));
+        try {
+            BinarySnapshot.openFiles(path);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ChangeFeedTest {
+    private static final Pattern PAGE = Pattern.compile("index=(\\d+)&pageSize=(\\d+)");
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    /**
+     * The addons keyed by the day of the month modified.
+     */
+    private final Map<Integer, String> addons = new TreeMap<>((a, b) -> b - a);
+    private volatile boolean down;
+    
+    private void modify(int id, int createdDay, int modifiedDay) {
+        addons.values().removeIf(json -> json.startsWith("{\"id\":" + id + ","));
+        addons.put(modifiedDay, "{\"id\":" + id + ",\"dateCreated\":\"2019-01-0" + createdDay + "T00:00:00Z\",\"dateModified\":\"2019-01-0" + modifiedDay + "T00:00:00Z\"}");
+    }
+    
+    private String page(StubServer.Request request) {
+        Matcher matcher = PAGE.matcher(request.query);
+        if (down || !request.query.contains("sort=LastUpdated&isSortDescending=true") || !matcher.find())
+            return null;
+        int index = Integer.parseInt(matcher.group(1)), pageSize = Integer.parseInt(matcher.group(2));
+        return addons.values().stream().skip(index).limit(pageSize).collect(Collectors.joining(",", "[", "]"));
+    }
+    
+    private static String deltas(List<ChangeFeed.Delta> deltas) {
+        return deltas.stream().map(delta -> delta.getType() + " " + delta.getAddon().id).collect(Collectors.joining(", "));
+    }
+    
+    @Test
+    public void pagesUntilCheckpoint() throws Exception {
+        for(int i = 1; i <= 5; i++)
+            modify(i, i, i);
+        Path checkpoint = folder.getRoot().toPath().resolve("feed.properties");
+        try (StubServer server = new StubServer(this::page)) {
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi());
+            MetaSearch search = MetaSearch.create(432).setSectionId(6).setPageSize(2);
+            assertEquals("ADDED 5, ADDED 4, ADDED 3, ADDED 2, ADDED 1", deltas(ChangeFeed.create(client, search).setCheckpointFile(checkpoint).poll().get()));
+            assertEquals(3, server.getRequests());
+            
+            modify(3, 3, 7);
+            modify(6, 6, 6);
+            ChangeFeed feed = ChangeFeed.create(client, search).setCheckpointFile(checkpoint);
+            assertEquals("CHANGED 3, ADDED 6", deltas(feed.poll().get()));
+            assertEquals(5, server.getRequests());
+            assertEquals("", deltas(feed.poll().get()));
+            assertEquals(6, server.getRequests());
+            
+            long before = feed.getCheckpoint();
+            modify(1, 1, 8);
+            down = true;
+            try {
+                feed.poll().get();
+                fail();
+            } catch (ExecutionException expected) {
+            }
+            assertEquals(before, feed.getCheckpoint());
+            down = false;
+            assertEquals("CHANGED 1", deltas(feed.poll().get()));
+        }
+    }
+}
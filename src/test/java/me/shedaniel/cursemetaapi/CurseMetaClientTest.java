@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CurseMetaClientTest {
+    @Test
+    public void limitsRequestsPerHost() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        try (StubServer server = new StubServer(request -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {
+            }
+            inFlight.decrementAndGet();
+            return "{\"id\":" + request.path.substring(request.path.lastIndexOf('/') + 1) + "}";
+        })) {
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi()).setMaxRequestsPerHost(2);
+            CompletableFuture<?>[] futures = IntStream.range(0, 20).mapToObj(client::getAddon).toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(futures).get();
+            assertEquals(20, server.getRequests());
+            assertTrue("max in flight was " + maxInFlight.get(), maxInFlight.get() <= 2);
+            assertEquals(7, client.getAddon(7).get().id);
+        }
+    }
+}
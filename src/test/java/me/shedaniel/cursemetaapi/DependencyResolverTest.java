@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DependencyResolverTest {
+    private static final Map<Integer, String> ADDONS = new HashMap<>();
+    private static final Map<Integer, String> FILES = new HashMap<>();
+    
+    static {
+        ADDONS.put(1, "{\"id\":1,\"gameVersionLatestFiles\":[{\"gameVersion\":\"1.12.2\",\"projectFileId\":10,\"fileType\":1},{\"gameVersion\":\"1.16.5\",\"projectFileId\":19,\"fileType\":1}]}");
+        ADDONS.put(2, "{\"id\":2,\"latestFiles\":[{\"id\":20,\"gameVersion\":[\"1.12.2\"],\"releaseType\":1},{\"id\":21,\"gameVersion\":[\"1.12.2\"],\"releaseType\":3}]}");
+        ADDONS.put(3, "{\"id\":3,\"gameVersionLatestFiles\":[{\"gameVersion\":\"1.12.2\",\"projectFileId\":30,\"fileType\":2}]}");
+        ADDONS.put(5, "{\"id\":5}");
+        ADDONS.put(6, "{\"id\":6,\"latestReleaseFileId\":60,\"latestFiles\":[{\"id\":60,\"releaseType\":1},{\"id\":61,\"releaseType\":3}]}");
+        ADDONS.put(7, "{\"id\":7,\"latestFiles\":[{\"id\":70,\"releaseType\":1}]}");
+        FILES.put(10, "{\"id\":10,\"dependencies\":[{\"addonId\":2,\"type\":3},{\"addonId\":3,\"type\":3}]}");
+        FILES.put(20, "{\"id\":20,\"dependencies\":[{\"addonId\":3,\"type\":3},{\"addonId\":5,\"type\":3}]}");
+        FILES.put(21, "{\"id\":21}");
+        FILES.put(60, "{\"id\":60}");
+        FILES.put(61, "{\"id\":61}");
+        FILES.put(30, "{\"id\":30,\"dependencies\":[{\"addonId\":1,\"type\":3},{\"addonId\":4,\"type\":2}]}");
+    }
+    
+    private static String respond(StubServer.Request request) {
+        if (request.method.equals("POST") && request.path.equals("/api/v2/addon"))
+            return IntStream.of(CurseMetaAPI.GSON.fromJson(request.body, int[].class)).filter(ADDONS::containsKey)
+                    .mapToObj(ADDONS::get).collect(Collectors.joining(",", "[", "]"));
+        if (request.method.equals("POST") && request.path.equals("/api/v2/addon/files"))
+            return IntStream.of(CurseMetaAPI.GSON.fromJson(request.body, int[].class)).filter(FILES::containsKey)
+                    .mapToObj(id -> "\"" + id + "\":[" + FILES.get(id) + "]").collect(Collectors.joining(",", "{", "}"));
+        if (request.path.equals("/api/v2/addon/7/files"))
+            return "[{\"id\":70,\"releaseType\":1},{\"id\":69,\"releaseType\":1}]";
+        if (request.path.equals("/api/v2/addon/5/files"))
+            return "[{\"id\":50,\"gameVersion\":[\"1.12.2\"],\"dependencies\":[{\"addonId\":99,\"type\":3}]},{\"id\":51,\"gameVersion\":[\"1.16.5\"]}]";
+        return null;
+    }
+    
+    @Test
+    public void resolvesLevelByLevel() throws Exception {
+        try (StubServer server = new StubServer(DependencyResolverTest::respond)) {
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi());
+            DependencyResolver.Graph graph = DependencyResolver.create(client).setGameVersion("1.12.2").setMaxReleaseType(2).resolve(1).get();
+            assertEquals(7, server.getRequests());
+            assertEquals(Arrays.asList(1, 2, 3, 5), graph.getNodes().keySet().stream().collect(Collectors.toList()));
+            assertEquals(20, graph.getNodes().get(2).getFile().fileId);
+            assertSame(graph.getNodes().get(2), graph.getNode(2));
+            assertEquals(50, graph.getNodes().get(5).getFile().fileId);
+            assertEquals(2, graph.getNodes().get(5).getDepth());
+            assertEquals(Collections.singletonList(99), graph.getUnresolved());
+            assertEquals(Collections.singletonList(Arrays.asList(1, 2, 3)), graph.getCycles());
+            assertEquals(Arrays.asList(3, 5, 2, 1), graph.getInstallOrder().stream().map(node -> node.getAddon().id).collect(Collectors.toList()));
+        }
+    }
+    
+    @Test
+    public void usesPinnedFiles() throws Exception {
+        try (StubServer server = new StubServer(DependencyResolverTest::respond)) {
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi());
+            DependencyResolver.Graph graph = DependencyResolver.create(client).setGameVersion("1.12.2").resolve(new int[]{1, 3}, new int[]{10, 30}).get();
+            assertEquals(21, graph.getNodes().get(2).getFile().fileId);
+            assertEquals(30, graph.getNodes().get(3).getFile().fileId);
+            assertEquals(0, graph.getNodes().get(3).getDepth());
+        }
+    }
+    
+    @Test
+    public void selectsByReleaseTypeWithoutGameVersion() throws Exception {
+        try (StubServer server = new StubServer(DependencyResolverTest::respond)) {
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi());
+            DependencyResolver.Graph graph = DependencyResolver.create(client).resolve(6, 7).get();
+            assertEquals(61, graph.getNodes().get(6).getFile().fileId);
+            // File 70 is not found in bulk, it is taken from the files of the addon
+            assertEquals(70, graph.getNodes().get(7).getFile().fileId);
+            graph = DependencyResolver.create(client).setMaxReleaseType(1).resolve(6).get();
+            assertEquals(60, graph.getNodes().get(6).getFile().fileId);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class DiskCacheTransportTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static String addon(StubServer.Request request) {
+        return "{\"id\":" + request.path.substring(request.path.lastIndexOf('/') + 1) + ",\"name\":\"Addon\"}";
+    }
+    
+    @Test
+    public void servesFromDiskAfterRestartAndRevalidates() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (StubServer server = new StubServer(DiskCacheTransportTest::addon)) {
+            URL url = new URL(server.getApi() + "/api/v2/addon/1");
+            try (Transport.Response response = DiskCacheTransport.create(directory).execute(Transport.Request.get(url))) {
+                assertNull(response.getHeader(DiskCacheTransport.CACHE_HEADER));
+                assertEquals("{\"id\":1,\"name\":\"Addon\"}", CurseMetaAPI.InternetUtils.getStringFromStream(response.getBody()));
+            }
+            DiskCacheTransport restarted = DiskCacheTransport.create(directory);
+            try (Transport.Response response = restarted.execute(Transport.Request.get(url))) {
+                assertEquals("hit", response.getHeader(DiskCacheTransport.CACHE_HEADER));
+            }
+            assertEquals(1, server.getRequests());
+            restarted.setMaxAge(0, TimeUnit.MILLISECONDS);
+            Transport.Request request = Transport.Request.get(url);
+            try (Transport.Response response = restarted.execute(request)) {
+                assertEquals("revalidated", response.getHeader(DiskCacheTransport.CACHE_HEADER));
+                assertEquals("{\"id\":1,\"name\":\"Addon\"}", CurseMetaAPI.InternetUtils.getStringFromStream(response.getBody()));
+            }
+            assertEquals(2, server.getRequests());
+            assertTrue(request.getHeaders().isEmpty());
+        }
+    }
+    
+    @Test
+    public void reportsFailedWrites() throws Exception {
+        Path file = folder.newFile("cache").toPath();
+        try (StubServer server = new StubServer(DiskCacheTransportTest::addon)) {
+            DiskCacheTransport.create(file).execute(Transport.Request.get(new URL(server.getApi() + "/api/v2/addon/1"))).close();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+    
+    @Test
+    public void reusesParsedValueWhenRevalidated() throws Exception {
+        try (StubServer server = new StubServer(DiskCacheTransportTest::addon)) {
+            ResponseCache cache = ResponseCache.create().setTtl(ResponseCache.Endpoint.ADDON, 1, TimeUnit.MILLISECONDS);
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi()).setCache(cache)
+                    .setTransport(DiskCacheTransport.create(folder.getRoot().toPath()).setMaxAge(0, TimeUnit.MILLISECONDS));
+            CurseMetaAPI.Addon addon = client.getAddon(1).get();
+            Thread.sleep(5);
+            assertSame(addon, client.getAddon(1).get());
+            assertEquals(2, server.getRequests());
+        }
+    }
+    
+    @Test
+    public void compactsAboveMaxSize() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (StubServer server = new StubServer(DiskCacheTransportTest::addon)) {
+            DiskCacheTransport transport = DiskCacheTransport.create(directory).setMaxSize(2000);
+            for(int i = 0; i < 50; i++)
+                transport.execute(Transport.Request.get(new URL(server.getApi() + "/api/v2/addon/" + i))).close();
+            long size;
+            try (Stream<Path> files = Files.list(directory)) {
+                size = files.mapToLong(path -> path.toFile().length()).sum();
+            }
+            assertTrue("cache is " + size + " bytes", size <= 2000);
+        }
+    }
+    
+    @Test
+    public void passesDownloadsThrough() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        String large = "[" + String.join(",", Collections.nCopies(1000, "1")) + "]";
+        try (StubServer server = new StubServer(request -> request.path.equals("/large") ? large : "PK jar")) {
+            DiskCacheTransport transport = DiskCacheTransport.create(directory).setMaxEntrySize(1000);
+            for(int i = 0; i < 2; i++) {
+                try (Transport.Response response = transport.execute(Transport.Request.get(new URL(server.getApi() + "/files/mod.jar")))) {
+                    assertEquals("PK jar", CurseMetaAPI.InternetUtils.getStringFromStream(response.getBody()));
+                }
+                try (Transport.Response response = transport.execute(Transport.Request.get(new URL(server.getApi() + "/large")))) {
+                    assertEquals(large, CurseMetaAPI.InternetUtils.getStringFromStream(response.getBody()));
+                }
+            }
+            try (Transport.Response response = transport.setMaxEntrySize(1 << 20).execute(Transport.Request.get(new URL(server.getApi() + "/large")))) {
+                assertNull(response.getHeader(DiskCacheTransport.CACHE_HEADER));
+            }
+            try (Transport.Response response = transport.execute(Transport.Request.get(new URL(server.getApi() + "/large")).setHeader("Range", "bytes=1-"))) {
+                assertEquals(206, response.getStatus());
+                assertEquals(large.substring(1), CurseMetaAPI.InternetUtils.getStringFromStream(response.getBody()));
+            }
+            assertEquals(6, server.getRequests());
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(2, files.count());
+            }
+        }
+    }
+    
+    @Test
+    public void keepsContentTypeAndMissesOnCorruptEntries() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (StubServer server = new StubServer(DiskCacheTransportTest::addon)) {
+            URL url = new URL(server.getApi() + "/api/v2/addon/1");
+            DiskCacheTransport.create(directory).execute(Transport.Request.get(url)).close();
+            DiskCacheTransport restarted = DiskCacheTransport.create(directory);
+            try (Transport.Response response = restarted.execute(Transport.Request.get(url))) {
+                assertEquals("hit", response.getHeader(DiskCacheTransport.CACHE_HEADER));
+                assertEquals("application/json; charset=UTF-8", response.getHeader("Content-Type"));
+            }
+            Path meta;
+            try (Stream<Path> files = Files.list(directory)) {
+                meta = files.filter(path -> path.toString().endsWith(".meta")).findFirst().get();
+            }
+            String corrupt = new String(Files.readAllBytes(meta), StandardCharsets.UTF_8).replaceAll("storedAt=\\d+", "storedAt=x");
+            Files.write(meta, corrupt.getBytes(StandardCharsets.UTF_8));
+            try (Transport.Response response = restarted.execute(Transport.Request.get(url))) {
+                assertNull(response.getHeader(DiskCacheTransport.CACHE_HEADER));
+                assertEquals("{\"id\":1,\"name\":\"Addon\"}", CurseMetaAPI.InternetUtils.getStringFromStream(response.getBody()));
+            }
+            assertEquals(2, server.getRequests());
+        }
+    }
+}
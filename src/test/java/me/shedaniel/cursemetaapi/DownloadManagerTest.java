@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class DownloadManagerTest {
+    private static final String JAR = String.join("", Collections.nCopies(5000, "PK mod class ")) + "end";
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static CurseMetaAPI.AddonFile file(StubServer server, String name, long fingerprint) {
+        CurseMetaAPI.AddonFile file = new CurseMetaAPI.AddonFile();
+        file.fileName = name;
+        file.downloadUrl = server.getApi() + "/files/" + name;
+        file.fileLength = JAR.length();
+        file.packageFingerprint = fingerprint;
+        return file;
+    }
+    
+    @Test
+    public void downloadsAndVerifies() throws Exception {
+        AtomicLong progress = new AtomicLong();
+        try (StubServer server = new StubServer(request -> JAR)) {
+            Path directory = folder.getRoot().toPath();
+            DownloadManager manager = DownloadManager.create().setListener((target, downloaded, length) -> {
+                assertEquals(JAR.length(), length);
+                progress.set(downloaded);
+            });
+            Path path = manager.download(file(server, "mod.jar", Fingerprint.hash(JAR.getBytes(StandardCharsets.UTF_8))), directory).get();
+            assertEquals(JAR, new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+            assertEquals(JAR.length(), progress.get());
+            assertFalse(Files.exists(directory.resolve("mod.jar.part")));
+            manager.download(file(server, "mod.jar", Fingerprint.hash(JAR.getBytes(StandardCharsets.UTF_8))), directory).get();
+            assertEquals(1, server.getRequests());
+        }
+    }
+    
+    @Test
+    public void resumesPart() throws Exception {
+        List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+        try (StubServer server = new StubServer(request -> {
+            ranges.add(request.range);
+            return JAR;
+        })) {
+            Path target = folder.getRoot().toPath().resolve("mod.jar");
+            Files.write(target.resolveSibling("mod.jar.part"), JAR.substring(0, 1000).getBytes(StandardCharsets.UTF_8));
+            DownloadManager.create().download(new URL(server.getApi() + "/files/mod.jar"), target, JAR.length(), Fingerprint.hash(JAR.getBytes(StandardCharsets.UTF_8))).get();
+            assertEquals(Collections.singletonList("bytes=1000-"), ranges);
+            assertEquals(JAR, new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+        }
+    }
+    
+    @Test
+    public void restartsUnverifiedPart() throws Exception {
+        List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+        try (StubServer server = new StubServer(request -> {
+            ranges.add(request.range);
+            return JAR;
+        })) {
+            Path target = folder.getRoot().toPath().resolve("mod.jar");
+            URL url = new URL(server.getApi() + "/files/mod.jar");
+            Files.write(target.resolveSibling("mod.jar.part"), "old version".getBytes(StandardCharsets.UTF_8));
+            DownloadManager.create().download(url, target, 0, 0).get();
+            assertEquals(Collections.singletonList(null), ranges);
+            assertEquals(JAR, new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+            assertFalse(Files.exists(target.resolveSibling("mod.jar.part.etag")));
+            
+            // The ETag of another version fails If-Range, the server sends the whole file
+            Files.write(target.resolveSibling("mod.jar.part"), "old version".getBytes(StandardCharsets.UTF_8));
+            Files.write(target.resolveSibling("mod.jar.part.etag"), "\"old\"".getBytes(StandardCharsets.UTF_8));
+            DownloadManager.create().download(url, target, 0, 0).get();
+            assertEquals(Arrays.asList(null, "bytes=11-"), ranges);
+            assertEquals(JAR, new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+        }
+    }
+    
+    @Test
+    public void sharesDownloadsOfTheSameTarget() throws Exception {
+        try (StubServer server = new StubServer(request -> JAR)) {
+            Path directory = folder.getRoot().toPath();
+            CurseMetaAPI.AddonFile file = file(server, "mod.jar", Fingerprint.hash(JAR.getBytes(StandardCharsets.UTF_8)));
+            List<Path> paths = DownloadManager.create().downloadAll(Arrays.asList(file, file), directory).get();
+            assertEquals(Arrays.asList(directory.resolve("mod.jar"), directory.resolve("mod.jar")), paths);
+            assertEquals(1, server.getRequests());
+            assertEquals(JAR, new String(Files.readAllBytes(directory.resolve("mod.jar")), StandardCharsets.UTF_8));
+        }
+    }
+    
+    @Test
+    public void rejectsMismatch() throws Exception {
+        try (StubServer server = new StubServer(request -> JAR)) {
+            Path directory = folder.getRoot().toPath();
+            try {
+                DownloadManager.create().download(file(server, "mod.jar", 1), directory).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertFalse(Files.exists(directory.resolve("mod.jar")));
+            assertFalse(Files.exists(directory.resolve("mod.jar.part")));
+        }
+    }
+    
+    @Test
+    public void capsConcurrentDownloads() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger(), maxInFlight = new AtomicInteger();
+        try (StubServer server = new StubServer(request -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {
+            }
+            inFlight.decrementAndGet();
+            return JAR;
+        })) {
+            DownloadManager manager = DownloadManager.create().setMaxConcurrentDownloads(2);
+            List<CurseMetaAPI.AddonFile> files = new ArrayList<>();
+            for(int i = 0; i < 10; i++)
+                files.add(file(server, "mod-" + i + ".jar", 0));
+            CompletableFuture<List<Path>> downloads = manager.downloadAll(files, folder.getRoot().toPath());
+            assertEquals(10, downloads.get().size());
+            assertEquals(2, maxInFlight.get());
+        }
+    }
+    
+    @Test
+    public void capsBandwidth() throws Exception {
+        try (StubServer server = new StubServer(request -> JAR)) {
+            List<CurseMetaAPI.AddonFile> files = new ArrayList<>();
+            for(int i = 0; i < 3; i++)
+                files.add(file(server, "mod-" + i + ".jar", 0));
+            long start = System.nanoTime();
+            DownloadManager.create().setMaxBytesPerSecond(200_000).downloadAll(files, folder.getRoot().toPath()).get();
+            // About 195KB at 200KB/s, only the first read is not waited for
+            assertTrue(System.nanoTime() - start >= 500_000_000L);
+        }
+    }
+    
+    @Test
+    public void keepsFileNamesInDirectory() throws Exception {
+        try (StubServer server = new StubServer(request -> JAR)) {
+            Path directory = folder.newFolder("mods").toPath();
+            CurseMetaAPI.AddonFile file = file(server, "mod.jar", 0);
+            file.fileName = "../../mod.jar";
+            assertEquals(directory.resolve("mod.jar"), DownloadManager.create().download(file, directory).get());
+            assertFalse(Files.exists(folder.getRoot().toPath().resolve("mod.jar")));
+            file.fileName = "..";
+            try {
+                DownloadManager.create().download(file, directory).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+    }
+    
+    @Test
+    public void downloadsFileUrls() throws Exception {
+        Path source = folder.newFile("source.jar").toPath();
+        Files.write(source, JAR.getBytes(StandardCharsets.UTF_8));
+        Path target = folder.getRoot().toPath().resolve("mod.jar");
+        CurseMetaAPI.InternetUtils.downloadToFile(source.toUri().toURL(), target.toFile());
+        assertEquals(JAR, new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import me.shedaniel.cursemetaapi.CurseMetaAPI.Addon;
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class FakeTransportTest {
+    private static FakeTransport fixtures() throws Exception {
+        FakeTransport transport = FakeTransport.create();
+        try (Reader reader = new InputStreamReader(FakeTransportTest.class.getResourceAsStream("/addon.json"), StandardCharsets.UTF_8)) {
+            transport.addAddons(reader);
+        }
+        return transport.addAddons(new StringReader("[{\"id\":1,\"name\":\"Enough Mods\",\"gameId\":432,\"downloadCount\":10}," +
+                "{\"id\":2,\"name\":\"Mod Menu\",\"gameId\":432,\"downloadCount\":20}]"))
+                .addFiles(1, new StringReader("[{\"id\":11,\"fileName\":\"a.jar\",\"packageFingerprint\":1540447798},{\"id\":12,\"fileName\":\"b.jar\"}]"))
+                .setDescription(1, "<p>Description</p>")
+                .setChangelog(11, "<p>Changelog</p>");
+    }
+    
+    @Test
+    public void servesFixtures() throws Exception {
+        FakeTransport transport = fixtures();
+        CurseMetaClient client = CurseMetaClient.create().setApi("http://fake.invalid").setTransport(transport);
+        assertEquals("Just Enough Items (JEI)", client.getAddon(238222).get().name);
+        assertNull(client.getAddon(3).get());
+        assertEquals("1, 2", client.getAddons(1, 2, 3).get().stream().map(addon -> String.valueOf(addon.id)).sorted().collect(Collectors.joining(", ")));
+        assertEquals(2, client.getAddonFiles(1).get().size());
+        assertEquals("b.jar", client.getAddonFile(1, 12).get().fileName);
+        assertEquals(1, client.getAddonFilesBulk(11, 13).get().getFiles().size());
+        assertEquals("<p>Description</p>", client.getAddonDescription(1).get().trim());
+        assertEquals("<p>Changelog</p>", client.getAddonFileChangelog(1, 11).get().trim());
+        assertEquals(1, client.getFingerprintMatches(1540447798L, 5L).get().getMatches().get(1540447798L).addonId);
+        
+        List<Addon> found = client.search(MetaSearch.create(432).setSearchFilter("mod").setSortingMethod(MetaSearch.SortMethod.POPULARITY).setSortDescending(true)).get();
+        assertEquals("Mod Menu, Enough Mods", found.stream().map(addon -> addon.name).collect(Collectors.joining(", ")));
+    }
+    
+    @Test
+    public void injectsErrorsReproducibly() throws Exception {
+        FakeTransport transport = fixtures().setSeed(42).setErrorRate(0.5, 503).setLatency(1, 2, TimeUnit.MILLISECONDS);
+        CurseMetaClient client = CurseMetaClient.create().setApi("http://fake.invalid").setTransport(transport).setFallbackOnError(false);
+        StringBuilder outcomes = new StringBuilder();
+        for(int i = 0; i < 20; i++)
+            try {
+                client.getAddon(1).get();
+                outcomes.append('+');
+            } catch (ExecutionException e) {
+                assertEquals(503, ((HttpStatusException) e.getCause()).getStatus());
+                outcomes.append('-');
+            }
+        assertTrue(outcomes.indexOf("+") >= 0 && outcomes.indexOf("-") >= 0);
+        
+        FakeTransport replay = fixtures().setSeed(42).setErrorRate(0.5, 503);
+        client.setTransport(replay);
+        StringBuilder replayed = new StringBuilder();
+        for(int i = 0; i < 20; i++)
+            try {
+                client.getAddon(1).get();
+                replayed.append('+');
+            } catch (ExecutionException e) {
+                replayed.append('-');
+            }
+        assertEquals(outcomes.toString(), replayed.toString());
+        assertEquals(20, replay.getRequests());
+        
+        client.setTransport(fixtures().setFailureRate(1));
+        try {
+            client.getAddon(1).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage().startsWith("Injected failure"));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FingerprintTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void hashesBytes() {
+        assertEquals(1540447798L, Fingerprint.hash(new byte[0]));
+        assertEquals(2824650221L, Fingerprint.hash("hello world".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(183693545L, Fingerprint.hash("The quick brown fox\r\n\tjumps over the lazy dog.".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Fingerprint.hash("helloworld".getBytes(StandardCharsets.UTF_8)), Fingerprint.hash(" hello\tworld\n".getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    @Test
+    public void hashesFileAcrossBuffers() throws Exception {
+        byte[] bytes = new byte[200_003];
+        new Random(42).nextBytes(bytes);
+        Path file = folder.newFile("mod.jar").toPath();
+        Files.write(file, bytes);
+        assertEquals(Fingerprint.hash(bytes), Fingerprint.hash(file));
+    }
+    
+    @Test
+    public void matchesFiles() throws Exception {
+        Path a = Files.write(folder.newFile("a.jar").toPath(), "a".getBytes(StandardCharsets.UTF_8));
+        Path b = Files.write(folder.newFile("b.jar").toPath(), "b".getBytes(StandardCharsets.UTF_8));
+        folder.newFile("notes.txt");
+        long matched = Fingerprint.hash(a);
+        try (StubServer server = new StubServer(request -> {
+            if (!request.method.equals("POST") || !request.path.equals("/api/v2/fingerprint"))
+                return null;
+            long[] fingerprints = CurseMetaAPI.GSON.fromJson(request.body, long[].class);
+            return "{\"isCacheBuilt\":true,\"exactMatches\":[" + LongStream.of(fingerprints).filter(fingerprint -> fingerprint == matched)
+                    .mapToObj(fingerprint -> "{\"id\":7,\"file\":{\"id\":70,\"packageFingerprint\":" + fingerprint + "},\"latestFiles\":[]}")
+                    .collect(Collectors.joining(",")) + "],\"unmatchedFingerprints\":[]}";
+        })) {
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi());
+            assertEquals(Arrays.asList(a, b), Fingerprint.listJars(folder.getRoot().toPath()));
+            Map<Path, CurseMetaAPI.FingerprintMatch> matches = client.matchFiles(Fingerprint.listJars(folder.getRoot().toPath())).get();
+            assertEquals(1, matches.size());
+            assertEquals(7, matches.get(a).addonId);
+            assertEquals(70, matches.get(a).file.fileId);
+            long[] fingerprints = LongStream.range(0, 1200).map(i -> i == 600 ? matched : i).toArray();
+            CurseMetaAPI.FingerprintMatches bulk = client.getFingerprintMatches(fingerprints).get();
+            assertEquals(4, server.getRequests());
+            assertEquals(1, bulk.getMatches().size());
+            assertArrayEquals(LongStream.range(0, 1200).filter(i -> i != 600).toArray(), bulk.getUnmatchedFingerprints());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GetAddonFilesTest {
+    private static String files(StubServer.Request request) {
+        if (!request.method.equals("POST") || !request.path.equals("/api/v2/addon/files"))
+            return null;
+        int[] ids = CurseMetaAPI.GSON.fromJson(request.body, int[].class);
+        return IntStream.of(ids).filter(id -> id % 10 != 0)
+                .mapToObj(id -> "\"" + id + "\":[{\"id\":" + id + ",\"fileName\":\"file-" + id + ".jar\"}]")
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+    
+    @Test
+    public void reportsMissingFileIds() throws Exception {
+        try (StubServer server = new StubServer(GetAddonFilesTest::files)) {
+            int[] ids = IntStream.rangeClosed(1, 120).toArray();
+            CurseMetaAPI.AddonFilesBulk bulk = CurseMetaClient.create().setApi(server.getApi()).getAddonFilesBulk(ids).get();
+            assertEquals(3, server.getRequests());
+            assertEquals(108, bulk.getFiles().size());
+            assertEquals("file-42.jar", bulk.getFiles().get(42).fileName);
+            assertEquals("file-42.jar", bulk.getFile(42).fileName);
+            assertNull(bulk.getFile(40));
+            assertArrayEquals(IntStream.rangeClosed(1, 12).map(i -> i * 10).toArray(), bulk.getMissingFileIds());
+        }
+    }
+    
+    @Test
+    public void reportsFailedFileIdsApart() throws Exception {
+        try (StubServer server = new StubServer(request -> request.body.contains("101") ? null : files(request))) {
+            int[] ids = IntStream.rangeClosed(1, 120).toArray();
+            CurseMetaAPI.AddonFilesBulk bulk = CurseMetaClient.create().setApi(server.getApi()).getAddonFilesBulk(ids).get();
+            assertEquals(90, bulk.getFiles().size());
+            assertArrayEquals(IntStream.rangeClosed(1, 10).map(i -> i * 10).toArray(), bulk.getMissingFileIds());
+            assertArrayEquals(IntStream.rangeClosed(101, 120).toArray(), bulk.getFailedFileIds());
+        }
+    }
+}
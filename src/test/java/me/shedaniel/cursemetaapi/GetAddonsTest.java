@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class GetAddonsTest {
+    private static String addons(StubServer.Request request) {
+        if (!request.method.equals("POST") || !request.path.equals("/api/v2/addon"))
+            return null;
+        int[] ids = CurseMetaAPI.GSON.fromJson(request.body, int[].class);
+        // Answer in reverse to make sure the result order follows the requested ids
+        return IntStream.range(0, ids.length).map(i -> ids[ids.length - 1 - i])
+                .filter(id -> id % 7 != 0)
+                .mapToObj(id -> "{\"id\":" + id + ",\"name\":\"Addon " + id + "\"}")
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+    
+    @Test
+    public void batchesIdsIntoFewRequests() throws Exception {
+        try (StubServer server = new StubServer(GetAddonsTest::addons)) {
+            int[] ids = IntStream.rangeClosed(1, 300).toArray();
+            List<CurseMetaAPI.Addon> addons = CurseMetaClient.create().setApi(server.getApi()).getAddons(ids).get();
+            assertEquals(300 / CurseMetaClient.ADDONS_CHUNK_SIZE, server.getRequests());
+            assertEquals(IntStream.of(ids).filter(id -> id % 7 != 0).boxed().collect(Collectors.toList()),
+                    addons.stream().map(addon -> addon.id).collect(Collectors.toList()));
+        }
+    }
+    
+    @Test
+    public void keepsOrderOfRequestedIds() throws Exception {
+        try (StubServer server = new StubServer(GetAddonsTest::addons)) {
+            List<CurseMetaAPI.Addon> addons = CurseMetaClient.create().setApi(server.getApi()).getAddons(5, 3, 5, 1).get();
+            assertEquals(1, server.getRequests());
+            assertEquals("Addon 5", addons.get(0).name);
+            assertEquals(Arrays.asList(5, 3, 5, 1), addons.stream().map(addon -> addon.id).collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class GetStringFromStreamTest {
+    private static final String HTML = "<p>\u00dcber \"JEI\"</p>\r\n<ul>\n\t<li>\u65e5\u672c\u8a9e</li>\n</ul>\n";
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static Transport.Response response(String contentType, byte[] body) {
+        return new Transport.Response() {
+            @Override
+            public int getStatus() {
+                return 200;
+            }
+            
+            @Override
+            public String getHeader(String name) {
+                if (name.equalsIgnoreCase("Content-Type"))
+                    return contentType;
+                return name.equalsIgnoreCase("Content-Length") ? String.valueOf(body.length) : null;
+            }
+            
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(body);
+            }
+            
+            @Override
+            public void close() {
+            }
+        };
+    }
+    
+    @Test
+    public void preservesContent() throws Exception {
+        byte[] bytes = HTML.getBytes(StandardCharsets.UTF_8);
+        assertEquals(HTML, CurseMetaAPI.InternetUtils.getStringFromStream(new ByteArrayInputStream(bytes)));
+        assertEquals(HTML, CurseMetaAPI.InternetUtils.getStringFromStream(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8, bytes.length));
+        assertEquals(HTML, CurseMetaAPI.InternetUtils.getStringFromStream(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8, 3));
+        assertEquals("", CurseMetaAPI.InternetUtils.getStringFromStream(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_8, 0));
+        
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 1 << 20)
+            large.append(HTML);
+        assertEquals(large.toString(), CurseMetaAPI.InternetUtils.getStringFromStream(new ByteArrayInputStream(large.toString().getBytes(StandardCharsets.UTF_8))));
+        
+        String latin = "<p>\u00dcber</p>\n";
+        assertEquals(latin, CurseMetaAPI.InternetUtils.getStringFromResponse(response("text/html; charset=\"ISO-8859-1\"", latin.getBytes(StandardCharsets.ISO_8859_1))));
+        assertEquals(HTML, CurseMetaAPI.InternetUtils.getStringFromResponse(response("text/html; charset=unknown", bytes)));
+        
+        StringWriter writer = new StringWriter();
+        assertEquals(HTML.length(), CurseMetaAPI.InternetUtils.copyStream(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8, writer));
+        assertEquals(HTML, writer.toString());
+        
+        Path file = folder.getRoot().toPath().resolve("latin.html");
+        CurseMetaAPI.InternetUtils.copyResponse(response("text/html;charset=ISO-8859-1", latin.getBytes(StandardCharsets.ISO_8859_1)), file);
+        assertEquals(latin, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    public void clientKeepsDescriptionsAndChangelogs() throws Exception {
+        FakeTransport transport = FakeTransport.create()
+                .addAddons(new StringReader("{\"id\":1,\"name\":\"Enough Mods\"}"))
+                .setDescription(1, HTML)
+                .setChangelog(11, HTML);
+        CurseMetaClient client = CurseMetaClient.create().setApi("http://fake.invalid").setTransport(transport);
+        assertEquals(HTML, client.getAddonDescription(1).get());
+        assertEquals(HTML, client.getAddonFileChangelog(1, 11).get());
+        
+        Path description = folder.getRoot().toPath().resolve("description.html");
+        assertEquals(description, client.getAddonDescription(1, description).get());
+        assertEquals(HTML, new String(Files.readAllBytes(description), StandardCharsets.UTF_8));
+        Path changelog = folder.getRoot().toPath().resolve("changelog.html");
+        assertEquals(changelog, client.getAddonFileChangelog(1, 11, changelog).get());
+        assertEquals(HTML, new String(Files.readAllBytes(changelog), StandardCharsets.UTF_8));
+        assertNull(client.getAddonFileChangelog(1, 12, folder.getRoot().toPath().resolve("missing.html")).get());
+        assertFalse(Files.exists(folder.getRoot().toPath().resolve("missing.html")));
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertEquals(2, files.count());
+        }
+    }
+}
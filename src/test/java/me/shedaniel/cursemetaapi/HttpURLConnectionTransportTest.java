@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class HttpURLConnectionTransportTest {
+    @Test
+    public void reusesConnectionsAfterErrorsAndUnreadBodies() throws Exception {
+        StringBuilder large = new StringBuilder("[");
+        for(int i = 0; i < 2000; i++)
+            large.append(i == 0 ? "" : ",").append(i);
+        String body = large.append("]").toString();
+        try (StubServer server = new StubServer(request -> request.path.equals("/missing") ? null : body)) {
+            HttpURLConnectionTransport transport = new HttpURLConnectionTransport();
+            for(int i = 0; i < 10; i++) {
+                try (Transport.Response response = transport.execute(Transport.Request.get(new URL(server.getApi() + "/missing")))) {
+                    assertEquals(404, response.getStatus());
+                }
+                try (Transport.Response response = transport.execute(Transport.Request.get(new URL(server.getApi() + "/addon")))) {
+                    InputStream stream = response.getBody();
+                    assertEquals('[', stream.read());
+                }
+            }
+            assertEquals(20, transport.getRequests());
+            assertEquals(20, server.getRequests());
+            assertEquals(1, server.getConnections());
+        }
+    }
+    
+    @Test
+    public void readsEmptyGzipBodies() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write("[1]".getBytes(StandardCharsets.UTF_8));
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            boolean empty = exchange.getRequestURI().getPath().equals("/empty");
+            exchange.sendResponseHeaders(200, empty ? -1 : compressed.size());
+            if (!empty)
+                compressed.writeTo(exchange.getResponseBody());
+            exchange.close();
+        });
+        server.start();
+        try {
+            String api = "http://127.0.0.1:" + server.getAddress().getPort();
+            HttpURLConnectionTransport transport = new HttpURLConnectionTransport();
+            try (Transport.Response response = transport.execute(Transport.Request.get(new URL(api + "/empty")))) {
+                assertEquals(-1, response.getBody().read());
+            }
+            try (Transport.Response response = transport.execute(Transport.Request.get(new URL(api + "/addon")))) {
+                assertEquals("[1]", CurseMetaAPI.InternetUtils.getStringFromStream(response.getBody()));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class IntObjectMapTest {
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(42);
+        IntObjectMap<String> map = new IntObjectMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        for(int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(2000) * (random.nextBoolean() ? 1 : -65536);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        Map<Integer, String> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(expected.keySet().iterator().next()));
+    }
+    
+    @Test
+    public void keepsIntsInOrder() {
+        assertArrayEquals(new int[]{3, 1, -7, 0}, IntSet.distinct(new int[]{3, 1, 3, -7, 1, 0, 0}));
+        IntSet set = new IntSet();
+        for(int i = 0; i < 10_000; i++)
+            assertTrue(set.add(i * 31));
+        assertFalse(set.add(62));
+        assertTrue(set.contains(31 * 9_999));
+        assertFalse(set.contains(1));
+        assertEquals(10_000, set.size());
+        assertEquals(31 * 500, set.get(500));
+    }
+}
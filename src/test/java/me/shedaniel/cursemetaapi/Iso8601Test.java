@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class Iso8601Test {
+    @Test
+    public void parsesTheDatesOfTheApi() throws ParseException {
+        assertEquals(Instant.parse("2019-05-11T10:22:33.123Z").toEpochMilli(), Iso8601.parseMillis("2019-05-11T10:22:33.123"));
+        assertEquals(Instant.parse("2019-05-11T10:22:33.120Z").toEpochMilli(), Iso8601.parseMillis("2019-05-11T10:22:33.12Z"));
+        assertEquals(Instant.parse("2019-05-11T10:22:33.987Z").toEpochMilli(), Iso8601.parseMillis("2019-05-11T10:22:33.9876543"));
+        assertEquals(Instant.parse("1999-12-31T23:59:59Z").toEpochMilli(), Iso8601.parseMillis("1999-12-31T23:59:59"));
+        assertEquals(Instant.parse("2020-02-29T06:30:00Z").toEpochMilli(), Iso8601.parseMillis("2020-02-29T08:00:00+01:30"));
+    }
+    
+    @Test(expected = ParseException.class)
+    public void rejectsMalformedDates() throws ParseException {
+        Iso8601.parseMillis("2019-05-11 10:22");
+    }
+    
+    @Test
+    public void memoisesTheDatesOfAddonsAcrossThreads() {
+        CurseMetaAPI.Addon addon = new CurseMetaAPI.Addon();
+        addon.dateCreated = "2019-05-11T10:22:33.123";
+        IntStream.range(0, 10000).parallel().forEach(i -> {
+            try {
+                assertEquals(1557570153123L, addon.getDateCreated().getTime());
+            } catch (ParseException e) {
+                throw new AssertionError(e);
+            }
+        });
+        for(int i = 0; i < 1000; i++) {
+            long millis = ThreadLocalRandom.current().nextLong(0, 4102444800000L);
+            addon.dateModified = Instant.ofEpochMilli(millis).toString().replace("Z", "");
+            try {
+                assertEquals(millis, addon.getDateModifiedMillis());
+            } catch (ParseException e) {
+                throw new AssertionError(addon.dateModified, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class JsonArrayIteratorTest {
+    private static String files(StubServer.Request request) {
+        return IntStream.range(0, 1000).mapToObj(id -> id == 3 ? "null" : "{\"id\":" + id + ",\"fileName\":\"file-" + id + ".jar\"}")
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+    
+    @Test
+    public void skipsElementsThatAreNotObjects() throws Exception {
+        try (StubServer server = new StubServer(JsonArrayIteratorTest::files)) {
+            List<CurseMetaAPI.AddonFile> files = CurseMetaClient.create().setApi(server.getApi()).getAddonFiles(1).get();
+            assertEquals(999, files.size());
+            assertEquals("file-4.jar", files.get(3).fileName);
+        }
+    }
+    
+    @Test
+    public void skipsElementsThatFailToBind() throws Exception {
+        try (StubServer server = new StubServer(request -> "[{\"id\":1},{\"id\":\"x\"},{\"id\":{}},{\"id\":4}]")) {
+            List<CurseMetaAPI.AddonFile> files = CurseMetaClient.create().setApi(server.getApi()).getAddonFiles(1).get();
+            assertEquals(2, files.size());
+            assertEquals(4, files.get(1).fileId);
+        }
+    }
+    
+    @Test
+    public void releasesTheConnectionWhenClosedEarly() throws Exception {
+        try (StubServer server = new StubServer(JsonArrayIteratorTest::files)) {
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi()).setMaxRequestsPerHost(1);
+            try (JsonArrayIterator<CurseMetaAPI.AddonFile> iterator = client.iterateAddonFiles(1)) {
+                assertEquals(0, iterator.next().fileId);
+                assertEquals(1, iterator.next().fileId);
+            }
+            int[] count = new int[1];
+            client.forEachAddonFile(1, file -> count[0]++).get(5, TimeUnit.SECONDS);
+            assertEquals(999, count[0]);
+            JsonArrayIterator<CurseMetaAPI.AddonFile> iterator = client.iterateAddonFiles(1);
+            iterator.forEachRemaining(file -> {
+            });
+            assertFalse(iterator.hasNext());
+            assertEquals(3, server.getRequests());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class LatestFileIndexTest {
+    @Test
+    public void selectsFromAddons() throws Exception {
+        CurseMetaAPI.Addon addon;
+        try (Reader reader = new InputStreamReader(LatestFileIndexTest.class.getResourceAsStream("/addon.json"), StandardCharsets.UTF_8)) {
+            addon = CurseMetaAPI.GSON.fromJson(reader, CurseMetaAPI.Addon.class);
+        }
+        LatestFileIndex index = LatestFileIndex.create(CurseMetaClient.create()).add(addon);
+        assertEquals(2803400, index.getLatestFileId(addon.id, "1.14.4", 1));
+        assertEquals(2795862, index.getLatestFileId(addon.id, "1.12.2", 1));
+        assertEquals(2803294, index.getLatestFileId(addon.id, "1.12.2", 2));
+        assertEquals(2803400, index.getLatestFileId(addon.id, null, 3));
+        assertEquals(0, index.getLatestFileId(addon.id, "1.7.10", 3));
+        assertEquals(0, index.getLatestFileId(1, "1.14.4", 3));
+        assertEquals("1.14.4", index.getGameVersions(addon.id).get(0));
+        assertEquals(2803400, (int) index.selectFileId(addon.id, "1.14.4", 1).get());
+    }
+    
+    @Test
+    public void listsFilesOnce() throws Exception {
+        FakeTransport transport = FakeTransport.create()
+                .addAddons(new StringReader("{\"id\":1,\"name\":\"One\"}"))
+                .addFiles(1, new StringReader("[{\"id\":11,\"gameVersion\":[\"1.12.2\"],\"releaseType\":1},{\"id\":12,\"gameVersion\":[\"1.12.2\",\"Forge\"],\"releaseType\":3}," +
+                                              "{\"id\":13,\"gameVersion\":[\"1.9\"],\"releaseType\":1},{\"id\":14,\"gameVersion\":[\"1.14-Snapshot\"],\"releaseType\":2}," +
+                                              "{\"id\":15,\"gameVersion\":[\"1.14\"],\"releaseType\":1}]"));
+        CurseMetaClient client = CurseMetaClient.create().setApi("http://fake.invalid").setTransport(transport);
+        LatestFileIndex index = LatestFileIndex.create(client);
+        assertEquals(11, (int) index.selectFileId(1, "1.12.2", 1).get());
+        assertEquals(12, (int) index.selectFileId(1, "1.12.2", 3).get());
+        assertEquals(0, (int) index.selectFileId(1, "1.7.10", 3).get());
+        assertEquals(1, transport.getRequests());
+        assertEquals(Arrays.asList("1.14", "1.14-Snapshot", "1.12.2", "1.9"), index.getGameVersions(1));
+        assertEquals("0000000001.0000000014.0000000004", LatestFileIndex.pad("1.14.4"));
+        assertNull(LatestFileIndex.pad("Forge"));
+        assertTrue(LatestFileIndex.comparePadded(LatestFileIndex.pad("1.14-pre2"), LatestFileIndex.pad("1.14")) < 0);
+        assertTrue(LatestFileIndex.comparePadded(LatestFileIndex.pad("1.14-pre2"), LatestFileIndex.pad("1.13.2")) > 0);
+        assertTrue(LatestFileIndex.comparePadded(LatestFileIndex.pad("1.14.4"), LatestFileIndex.pad("1.14")) > 0);
+    }
+    
+    @Test
+    public void listsAgainAfterFailure() throws Exception {
+        FakeTransport transport = FakeTransport.create()
+                .addAddons(new StringReader("{\"id\":1,\"name\":\"One\"}"))
+                .addFiles(1, new StringReader("[{\"id\":11,\"gameVersion\":[\"1.12.2\"],\"releaseType\":1}]"))
+                .setFailureRate(1);
+        CurseMetaClient client = CurseMetaClient.create().setApi("http://fake.invalid").setTransport(transport).setFallbackOnError(false);
+        LatestFileIndex index = LatestFileIndex.create(client);
+        assertEquals(0, (int) index.selectFileId(1, "1.12.2", 1).get());
+        transport.setFailureRate(0).setErrorRate(1, 503);
+        client.setFallbackOnError(true);
+        assertEquals(0, (int) index.selectFileId(1, "1.12.2", 1).get());
+        transport.setErrorRate(0, 503);
+        assertEquals(11, (int) index.selectFileId(1, "1.12.2", 1).get());
+        assertEquals(11, (int) index.selectFileId(1, "1.12.2", 1).get());
+        assertEquals(3, transport.getRequests());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class LeanBindingTest {
+    static CurseMetaAPI.Addon read(Gson gson) throws Exception {
+        try (Reader reader = new InputStreamReader(LeanBindingTest.class.getResourceAsStream("/addon.json"), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, CurseMetaAPI.Addon.class);
+        }
+    }
+    
+    @Test
+    public void bindsTheSameValuesWithoutTheSkippedFields() throws Exception {
+        CurseMetaAPI.Addon full = read(CurseMetaAPI.GSON);
+        CurseMetaAPI.Addon lean = read(LeanBinding.GSON);
+        assertEquals(CurseMetaAPI.GSON.toJson(full.authors), CurseMetaAPI.GSON.toJson(lean.authors));
+        assertEquals(CurseMetaAPI.GSON.toJson(full.categories), CurseMetaAPI.GSON.toJson(lean.categories));
+        assertEquals(CurseMetaAPI.GSON.toJson(full.gameVersionLatestFiles), CurseMetaAPI.GSON.toJson(lean.gameVersionLatestFiles));
+        assertEquals(full.latestReleaseFileId, lean.latestReleaseFileId);
+        assertEquals(full.downloadCount, lean.downloadCount, 0);
+        assertEquals(full.popularityScore, lean.popularityScore, 0);
+        assertEquals(full.isExperimental, lean.isExperimental);
+        assertEquals(full.getDateCreatedMillis(), lean.getDateCreatedMillis());
+        CurseMetaAPI.Addon.AddonLatestFiles fullFile = full.latestFiles.get(1);
+        CurseMetaAPI.Addon.AddonLatestFiles leanFile = lean.latestFiles.get(1);
+        assertEquals(fullFile.packageFingerprint, leanFile.packageFingerprint);
+        assertEquals(fullFile.modules.get(1).moduleName, leanFile.modules.get(1).moduleName);
+        assertEquals(fullFile.modules.get(1).fingerprint, leanFile.modules.get(1).fingerprint);
+        assertEquals(fullFile.sortableGameVersion.get(0).gameVersionPadded, leanFile.sortableGameVersion.get(0).gameVersionPadded);
+        assertNotNull(fullFile.installMetadata);
+        assertNull(leanFile.installMetadata);
+        assertNull(leanFile.changelog);
+    }
+    
+    @Test
+    public void internsRepeatedStrings() throws Exception {
+        CurseMetaAPI.Addon first = read(LeanBinding.GSON);
+        CurseMetaAPI.Addon second = read(LeanBinding.GSON);
+        assertSame(first.gameName, second.gameName);
+        assertSame(first.categories.get(0).name, second.categories.get(0).name);
+        assertSame(first.latestFiles.get(0).gameVersion.get(0), second.latestFiles.get(0).gameVersion.get(0));
+        assertSame(first.gameVersionLatestFiles.get(1).gameVersion, second.gameVersionLatestFiles.get(2).gameVersion);
+        assertNotSame(first.summary, second.summary);
+    }
+}
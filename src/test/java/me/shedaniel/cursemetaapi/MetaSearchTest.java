@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class MetaSearchTest {
+    private static String search(StubServer.Request request) {
+        Map<String, String> query = new HashMap<>();
+        for(String pair : request.query.split("&"))
+            query.put(pair.substring(0, pair.indexOf('=')), pair.substring(pair.indexOf('=') + 1));
+        int index = Integer.parseInt(query.get("index"));
+        int pageSize = Integer.parseInt(query.get("pageSize"));
+        return IntStream.range(index, Math.min(index + pageSize, 125))
+                .mapToObj(id -> "{\"id\":" + id + "}").collect(Collectors.joining(",", "[", "]"));
+    }
+    
+    @Test
+    public void iteratesEveryPage() throws Exception {
+        try (StubServer server = new StubServer(MetaSearchTest::search)) {
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi());
+            List<Integer> ids = toIds(client, MetaSearch.create(432), Integer.MAX_VALUE);
+            assertEquals(IntStream.range(0, 125).boxed().collect(Collectors.toList()), ids);
+            assertEquals(3, server.getRequests());
+        }
+    }
+    
+    @Test
+    public void stopsAtTheLimit() throws Exception {
+        try (StubServer server = new StubServer(MetaSearchTest::search)) {
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi());
+            List<Integer> ids = toIds(client, MetaSearch.create(432).setPageIndex(10).setPageSize(20), 45);
+            assertEquals(IntStream.range(10, 55).boxed().collect(Collectors.toList()), ids);
+            assertEquals(3, server.getRequests());
+        }
+    }
+    
+    private static List<Integer> toIds(CurseMetaClient client, MetaSearch search, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        client.searchAll(search, limit).forEachRemaining(addon -> ids.add(addon.id));
+        return ids;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetricsRecorderTest {
+    @Test
+    public void recordsRequestsAndCache() throws Exception {
+        FakeTransport transport = FakeTransport.create()
+                .addAddons(new StringReader("[{\"id\":1,\"name\":\"Enough Mods\",\"gameId\":432},{\"id\":2,\"name\":\"Mod Menu\",\"gameId\":432}]"))
+                .setLatency(2, 2, TimeUnit.MILLISECONDS);
+        MetricsRecorder metrics = MetricsRecorder.create();
+        CurseMetaClient client = CurseMetaClient.create().setApi("http://fake.invalid").setTransport(transport).setCache(ResponseCache.create()).setMetrics(metrics);
+        assertEquals("Enough Mods", client.getAddon(1).get().name);
+        assertEquals("Enough Mods", client.getAddon(1).get().name);
+        assertNull(client.getAddon(3).get());
+        assertEquals(2, client.search(MetaSearch.create(432)).get().size());
+        try (JsonArrayIterator<CurseMetaAPI.Addon> iterator = client.iterateSearch(MetaSearch.create(432))) {
+            iterator.forEachRemaining(addon -> {});
+        }
+        
+        assertEquals(0, metrics.getInFlight());
+        MetricsRecorder.EndpointMetrics addon = metrics.getEndpoints().get("addon");
+        assertEquals(2, addon.getCount());
+        assertEquals(1, addon.getErrors());
+        assertTrue(addon.getBytes() > 0);
+        assertTrue(addon.getNetworkNanos() >= TimeUnit.MILLISECONDS.toNanos(4));
+        assertTrue(addon.getLatencyPercentile(0.5, TimeUnit.MICROSECONDS) >= 2000);
+        assertEquals(1, metrics.getCacheHits(ResponseCache.Endpoint.ADDON));
+        assertEquals(2, metrics.getCacheMisses(ResponseCache.Endpoint.ADDON));
+        assertEquals(1 / 3.0, metrics.getCacheHitRate(), 1e-9);
+        
+        MetricsRecorder.EndpointMetrics search = metrics.getEndpoints().get("addon.search");
+        assertEquals(2, search.getCount());
+        assertEquals(0, search.getErrors());
+        Map<String, Double> meters = metrics.getMeters();
+        assertEquals(2.0, meters.get("cursemeta.requests.count{endpoint=addon.search}"), 0);
+        assertEquals(1.0, meters.get("cursemeta.cache.hits{cache=addon}"), 0);
+    }
+    
+    @Test
+    public void latencyBuckets() {
+        Random random = new Random(42);
+        for(int i = 0; i < 10000; i++) {
+            long micros = random.nextInt(1 << random.nextInt(31));
+            long upperBound = MetricsRecorder.EndpointMetrics.upperBound(MetricsRecorder.EndpointMetrics.bucket(micros));
+            assertTrue(micros + " <= " + upperBound, micros <= upperBound && upperBound <= micros * 1.25 + 1);
+        }
+        assertEquals(Long.MAX_VALUE, MetricsRecorder.EndpointMetrics.upperBound(MetricsRecorder.EndpointMetrics.bucket(Long.MAX_VALUE)));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ModpackResolverTest {
+    private static final String MANIFEST = "{\"minecraft\":{\"version\":\"1.12.2\",\"modLoaders\":[{\"id\":\"forge-14.23.5.2847\",\"primary\":true}]}," +
+            "\"manifestType\":\"minecraftModpack\",\"manifestVersion\":1,\"name\":\"Pack\",\"version\":\"1.0\",\"author\":\"shedaniel\"," +
+            "\"files\":[{\"projectID\":1,\"fileID\":11,\"required\":true},{\"projectID\":2,\"fileID\":21,\"required\":false}," +
+            "{\"projectID\":1,\"fileID\":11,\"required\":true},{\"projectID\":3,\"fileID\":31}],\"overrides\":\"overrides\"}";
+    
+    @Test
+    public void parsesManifest() throws IOException {
+        ModpackResolver.Manifest manifest = ModpackResolver.parse(new StringReader(MANIFEST));
+        assertEquals("Pack", manifest.getName());
+        assertEquals("1.0", manifest.getVersion());
+        assertEquals("shedaniel", manifest.getAuthor());
+        assertEquals("1.12.2", manifest.getMinecraftVersion());
+        assertEquals(Arrays.asList("forge-14.23.5.2847"), manifest.getModLoaders());
+        assertEquals("11, 21, 31", manifest.getEntries().stream().map(entry -> String.valueOf(entry.getFileId())).collect(Collectors.joining(", ")));
+        assertFalse(manifest.getEntries().get(1).isRequired());
+        assertTrue(manifest.getEntries().get(2).isRequired());
+        try {
+            ModpackResolver.parse(new StringReader("{\"files\":[{\"projectID\":\"x\"}]}"));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+    
+    @Test
+    public void resolvesFiles() throws Exception {
+        FakeTransport transport = FakeTransport.create()
+                .addAddons(new StringReader("[{\"id\":1,\"name\":\"One\"},{\"id\":2,\"name\":\"Two\"}]"))
+                .addFiles(1, new StringReader("[{\"id\":11,\"fileName\":\"one.jar\",\"fileLength\":100,\"downloadUrl\":\"https://edge.forgecdn.net/files/1/11/one.jar\"}]"))
+                .addFiles(2, new StringReader("[{\"id\":21,\"fileName\":\"two.jar\",\"fileLength\":200,\"downloadUrl\":\"https://edge.forgecdn.net/files/2/21/two.jar\"}]"));
+        CurseMetaClient client = CurseMetaClient.create().setApi("http://fake.invalid").setTransport(transport);
+        ModpackResolver.Pack pack = ModpackResolver.create(client).resolve(ModpackResolver.parse(new StringReader(MANIFEST))).get();
+        assertEquals(2, pack.getMods().size());
+        assertEquals("One", pack.getMods().get(0).getAddon().name);
+        assertEquals("https://edge.forgecdn.net/files/2/21/two.jar", pack.getMods().get(1).getDownloadUrl());
+        assertEquals(300, pack.getTotalLength());
+        assertEquals("one.jar, two.jar", pack.getFiles().stream().map(file -> file.fileName).collect(Collectors.joining(", ")));
+        assertEquals(1, pack.getMissing().size());
+        assertEquals(31, pack.getMissing().get(0).getFileId());
+        // One bulk addon request, one bulk file request and one single request for the missing file
+        assertEquals(3, transport.getRequests());
+    }
+    
+    @Test
+    public void retriesFailedBulkInBulk() throws Exception {
+        AtomicInteger bulks = new AtomicInteger();
+        try (StubServer server = new StubServer(request -> {
+            if (request.path.equals("/api/v2/addon"))
+                return "[{\"id\":1,\"name\":\"One\"},{\"id\":2,\"name\":\"Two\"}]";
+            if (request.path.equals("/api/v2/addon/files") && bulks.incrementAndGet() > 1)
+                return "{\"11\":[{\"id\":11,\"fileName\":\"one.jar\"}],\"21\":[{\"id\":21,\"fileName\":\"two.jar\"}]}";
+            return null;
+        })) {
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi());
+            ModpackResolver.Pack pack = ModpackResolver.create(client).resolve(ModpackResolver.parse(new StringReader(MANIFEST))).get();
+            assertEquals("one.jar, two.jar", pack.getFiles().stream().map(file -> file.fileName).collect(Collectors.joining(", ")));
+            assertEquals(31, pack.getMissing().get(0).getFileId());
+            // One bulk addon request, the failed bulk file request and its retry, one single request for the missing file
+            assertEquals(4, server.getRequests());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class OfflineAddonIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static CurseMetaAPI.Addon addon(int id, String name, String slug, String author, int category, String gameVersion, double downloads, String dateModified) {
+        return CurseMetaAPI.GSON.fromJson("{\"id\":" + id + ",\"gameId\":432,\"name\":\"" + name + "\",\"slug\":\"" + slug + "\",\"authors\":[{\"name\":\"" + author + "\"}]," +
+                                          "\"categories\":[{\"categoryId\":" + category + "}],\"categorySection\":{\"gameCategoryId\":6},\"gameVersionLatestFiles\":[{\"gameVersion\":\"" + gameVersion + "\"}]," +
+                                          "\"downloadCount\":" + downloads + ",\"dateModified\":\"" + dateModified + "\"}", CurseMetaAPI.Addon.class);
+    }
+    
+    private static OfflineAddonIndex index() {
+        OfflineAddonIndex index = OfflineAddonIndex.create();
+        index.put(addon(1, "Just Enough Items", "jei", "mezz", 421, "1.12.2", 1e8, "2019-01-03T00:00:00Z"));
+        index.put(addon(2, "Just Enough Resources", "just-enough-resources-jer", "way2muchnoise", 423, "1.12.2", 2e7, "2019-01-02T00:00:00Z"));
+        index.put(addon(3, "JourneyMap", "journeymap", "techbrew", 423, "1.14.4", 5e7, "2019-01-05T00:00:00Z"));
+        index.put(addon(4, "Roughly Enough Items", "roughly-enough-items", "shedaniel", 421, "1.14.4", 1e6, "2019-01-04T00:00:00Z"));
+        return index;
+    }
+    
+    @Test
+    public void searchesByPrefix() {
+        OfflineAddonIndex index = index();
+        assertArrayEquals(new int[]{1, 2}, index.searchIds(MetaSearch.create(432).setSearchFilter("just enou").setSortingMethod(MetaSearch.SortMethod.NAME)));
+        assertArrayEquals(new int[]{1, 3, 2}, index.searchIds(MetaSearch.create(432).setSearchFilter("j").setSortingMethod(MetaSearch.SortMethod.AUTHOR)));
+        assertArrayEquals(new int[]{1}, index.searchIds(MetaSearch.create(432).setSearchFilter("j").setCategoryId(421)));
+        assertArrayEquals(new int[]{4}, index.searchIds(MetaSearch.create(432).setSearchFilter("shed")));
+        assertArrayEquals(new int[0], index.searchIds(MetaSearch.create(432).setSearchFilter("enough nothing")));
+    }
+    
+    @Test
+    public void filtersSortsAndPages() {
+        OfflineAddonIndex index = index();
+        MetaSearch search = MetaSearch.create(432).setSectionId(6).setSortingMethod(MetaSearch.SortMethod.TOTAL_DOWNLOADS).setSortDescending(true);
+        assertArrayEquals(new int[]{1, 3, 2, 4}, index.searchIds(search));
+        assertArrayEquals(new int[]{3, 2}, index.searchIds(search.setPageIndex(1).setPageSize(2)));
+        assertArrayEquals(new int[]{4, 1}, index.searchIds(MetaSearch.create(432).setCategoryId(421).setSortingMethod(MetaSearch.SortMethod.LAST_UPDATED).setSortDescending(true)));
+        assertArrayEquals(new int[]{3, 4}, index.searchIds(MetaSearch.create(432).setGameVersion("1.14.4").setSortingMethod(MetaSearch.SortMethod.NAME)));
+        assertArrayEquals(new int[0], index.searchIds(MetaSearch.create(1)));
+        assertEquals("JourneyMap", index.search(MetaSearch.create(432).setGameVersion("1.14.4").setSortingMethod(MetaSearch.SortMethod.NAME)).get(0).name);
+    }
+    
+    @Test
+    public void keepsWordsAndOrdersUpToDate() {
+        OfflineAddonIndex index = index();
+        MetaSearch byDownloads = MetaSearch.create(432).setSortingMethod(MetaSearch.SortMethod.TOTAL_DOWNLOADS).setSortDescending(true);
+        assertArrayEquals(new int[]{1, 3, 2, 4}, index.searchIds(byDownloads));
+        assertArrayEquals(new int[]{1, 2}, index.searchIds(MetaSearch.create(432).setSearchFilter("enough").setGameVersion("1.12.2")));
+        index.put(addon(2, "Resource Lens", "resource-lens", "way2muchnoise", 423, "1.12.2", 3e8, "2019-01-06T00:00:00Z"));
+        index.put(addon(5, "Enough Mods", "enough-mods", "someone", 421, "1.12.2", 3e7, "2019-01-07T00:00:00Z"));
+        assertArrayEquals(new int[]{2, 1, 3, 5, 4}, index.searchIds(byDownloads));
+        assertArrayEquals(new int[]{1, 5}, index.searchIds(MetaSearch.create(432).setSearchFilter("enough").setGameVersion("1.12.2")));
+        assertArrayEquals(new int[]{2}, index.searchIds(MetaSearch.create(432).setSearchFilter("lens")));
+        assertSame(index.get(2), index.get(2));
+    }
+    
+    @Test
+    public void loadsSnapshot() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("addons.idx");
+        index().save(path);
+        OfflineAddonIndex loaded = OfflineAddonIndex.load(path);
+        assertEquals(4, loaded.size());
+        assertEquals("mezz", loaded.get(1).authors.get(0).name);
+        assertArrayEquals(new int[]{1, 2}, loaded.searchIds(MetaSearch.create(432).setSearchFilter("enough").setGameVersion("1.12.2")));
+        assertEquals(index().getLastModified(), loaded.getLastModified());
+        loaded.put(addon(5, "Enough Mods", "enough-mods", "someone", 421, "1.12.2", 1, "2019-01-06T00:00:00Z"));
+        assertArrayEquals(new int[]{5, 1, 2}, loaded.searchIds(MetaSearch.create(432).setSearchFilter("enough").setGameVersion("1.12.2").setSortingMethod(MetaSearch.SortMethod.NAME)));
+    }
+    
+    @Test
+    public void updatesSinceLastModified() throws Exception {
+        String page = "[" + CurseMetaAPI.GSON.toJson(addon(5, "New", "new", "a", 421, "1.12.2", 1, "2019-01-07T00:00:00Z")) + "," +
+                      CurseMetaAPI.GSON.toJson(addon(2, "Just Enough Resources (JER)", "just-enough-resources-jer", "way2muchnoise", 423, "1.12.2", 2e7, "2019-01-06T00:00:00Z")) + "," +
+                      CurseMetaAPI.GSON.toJson(addon(3, "JourneyMap", "journeymap", "techbrew", 423, "1.14.4", 5e7, "2019-01-05T00:00:00Z")) + "," +
+                      CurseMetaAPI.GSON.toJson(addon(4, "Roughly Enough Items", "roughly-enough-items", "shedaniel", 421, "1.14.4", 1e6, "2019-01-04T00:00:00Z")) + "]";
+        try (StubServer server = new StubServer(request -> request.query.contains("sort=LastUpdated") && request.query.contains("isSortDescending=true") ? page : null)) {
+            OfflineAddonIndex index = index();
+            int updated = index.update(CurseMetaClient.create().setApi(server.getApi()), MetaSearch.create(432).setSectionId(6)).get();
+            assertEquals(3, updated);
+            assertEquals(5, index.size());
+            assertEquals("Just Enough Resources (JER)", index.get(2).name);
+            assertArrayEquals(new int[]{2}, index.searchIds(MetaSearch.create(432).setSearchFilter("jer")));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResilientTransportTest {
+    private static Transport.Response response(int status, String retryAfter, String body) {
+        return new Transport.Response() {
+            @Override
+            public int getStatus() {
+                return status;
+            }
+            
+            @Override
+            public String getHeader(String name) {
+                return name.equalsIgnoreCase("Retry-After") ? retryAfter : null;
+            }
+            
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+            }
+            
+            @Override
+            public void close() {
+            }
+        };
+    }
+    
+    /**
+     * Answers with the statuses in order, then with the last one.
+     */
+    private static Transport scripted(AtomicInteger calls, int... statuses) {
+        return request -> {
+            int status = statuses[Math.min(calls.getAndIncrement(), statuses.length - 1)];
+            if (status < 0)
+                throw new IOException("Connection refused");
+            return response(status, status == 429 ? "1" : null, "{\"id\":1}");
+        };
+    }
+    
+    private static Transport.Request request() throws IOException {
+        return Transport.Request.get(new URL("https://addons-ecs.forgesvc.net/api/v2/addon/1"));
+    }
+    
+    @Test
+    public void retriesWithBackoff() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ResilientTransport transport = ResilientTransport.create(scripted(calls, 503, -1, 200)).setBackoff(1, 10, TimeUnit.MILLISECONDS);
+        assertEquals(200, transport.execute(request()).getStatus());
+        assertEquals(3, calls.get());
+        
+        calls.set(0);
+        assertEquals(404, ResilientTransport.create(scripted(calls, 404)).execute(request()).getStatus());
+        assertEquals(1, calls.get());
+    }
+    
+    @Test
+    public void honoursRetryAfter() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        long start = System.nanoTime();
+        assertEquals(200, ResilientTransport.create(scripted(calls, 429, 200)).setBackoff(1, 2000, TimeUnit.MILLISECONDS).execute(request()).getStatus());
+        assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(1));
+        
+        calls.set(0);
+        assertEquals(429, ResilientTransport.create(scripted(calls, 429, 200)).setBackoff(1, 500, TimeUnit.MILLISECONDS).execute(request()).getStatus());
+        assertEquals(1, calls.get());
+    }
+    
+    @Test
+    public void opensCircuit() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ResilientTransport transport = ResilientTransport.create(scripted(calls, -1, -1, 200)).setMaxRetries(0).setCircuitBreaker(2, 200, TimeUnit.MILLISECONDS);
+        for(int i = 0; i < 2; i++)
+            try {
+                transport.execute(request());
+                fail();
+            } catch (IOException expected) {
+                assertFalse(expected instanceof CircuitOpenException);
+            }
+        assertTrue(transport.isOpen("addons-ecs.forgesvc.net"));
+        try {
+            transport.execute(request());
+            fail();
+        } catch (CircuitOpenException expected) {
+        }
+        assertEquals(2, calls.get());
+        Thread.sleep(250);
+        assertEquals(200, transport.execute(request()).getStatus());
+        assertFalse(transport.isOpen("addons-ecs.forgesvc.net"));
+    }
+    
+    @Test
+    public void countsFailedRequestsNotAttempts() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ResilientTransport transport = ResilientTransport.create(scripted(calls, -1)).setBackoff(1, 1, TimeUnit.MILLISECONDS).setCircuitBreaker(2, 1, TimeUnit.MINUTES);
+        try {
+            transport.execute(request());
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(4, calls.get());
+        assertFalse(transport.isOpen("addons-ecs.forgesvc.net"));
+        try {
+            transport.execute(request());
+            fail();
+        } catch (IOException expected) {
+        }
+        assertTrue(transport.isOpen("addons-ecs.forgesvc.net"));
+    }
+    
+    @Test
+    public void releasesInterruptedProbe() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        boolean[] interrupt = new boolean[1];
+        Transport flaky = request -> {
+            int call = calls.getAndIncrement();
+            if (call == 0)
+                throw new IOException("Connection refused");
+            if (interrupt[0])
+                Thread.currentThread().interrupt();
+            return response(call == 1 ? 503 : 200, "1", "{\"id\":1}");
+        };
+        ResilientTransport transport = ResilientTransport.create(flaky).setMaxRetries(1).setBackoff(1, 2000, TimeUnit.MILLISECONDS).setCircuitBreaker(1, 50, TimeUnit.MILLISECONDS);
+        try {
+            transport.setMaxRetries(0).execute(request());
+            fail();
+        } catch (IOException expected) {
+        }
+        transport.setMaxRetries(1);
+        Thread.sleep(60);
+        // The probe is interrupted while waiting for the Retry-After of its first attempt
+        interrupt[0] = true;
+        try {
+            transport.execute(request());
+            fail();
+        } catch (InterruptedIOException expected) {
+            assertTrue(Thread.interrupted());
+        }
+        interrupt[0] = false;
+        // The probe is interrupted while waiting for a permit
+        transport.setRateLimit(1, 1);
+        Thread.currentThread().interrupt();
+        try {
+            transport.execute(request());
+            fail();
+        } catch (InterruptedIOException expected) {
+            assertTrue(Thread.interrupted());
+        }
+        assertEquals(200, transport.setRateLimit(0, 1).execute(request()).getStatus());
+    }
+    
+    @Test
+    public void limitsRate() throws Exception {
+        ResilientTransport transport = ResilientTransport.create(scripted(new AtomicInteger(), 200)).setRateLimit(20, 1);
+        long start = System.nanoTime();
+        for(int i = 0; i < 6; i++)
+            transport.execute(request()).close();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(240));
+    }
+    
+    @Test
+    public void tellsNotFoundFromDown() throws Exception {
+        CurseMetaClient client = CurseMetaClient.create().setFallbackOnError(false);
+        try {
+            client.setTransport(scripted(new AtomicInteger(), 404)).getAddon(1).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(((HttpStatusException) e.getCause()).isNotFound());
+        }
+        client.setTransport(ResilientTransport.create(scripted(new AtomicInteger(), -1)).setMaxRetries(0).setCircuitBreaker(1, 1, TimeUnit.MINUTES));
+        for(Class<?> expected : new Class<?>[]{IOException.class, CircuitOpenException.class})
+            try {
+                client.getAddon(1).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertEquals(expected, e.getCause().getClass());
+            }
+        assertNull(client.setFallbackOnError(true).getAddon(1).get());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+    private static String addons(StubServer.Request request) {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException ignored) {
+        }
+        if (request.method.equals("POST"))
+            return IntStream.of(CurseMetaAPI.GSON.fromJson(request.body, int[].class))
+                    .mapToObj(id -> "{\"id\":" + id + "}").collect(Collectors.joining(",", "[", "]"));
+        if (request.path.endsWith("/404"))
+            return null;
+        return "{\"id\":" + request.path.substring(request.path.lastIndexOf('/') + 1) + "}";
+    }
+    
+    @Test
+    public void coalescesConcurrentMisses() throws Exception {
+        try (StubServer server = new StubServer(ResponseCacheTest::addons)) {
+            ResponseCache cache = ResponseCache.create();
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi()).setCache(cache);
+            CompletableFuture<?>[] futures = IntStream.range(0, 10).mapToObj(i -> client.getAddon(1)).toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(futures).get();
+            assertEquals(1, client.getAddon(1).get().id);
+            assertEquals(1, server.getRequests());
+            assertEquals(1, cache.getMisses());
+            assertEquals(9, cache.getCoalesced());
+            assertEquals(1, cache.getHits());
+        }
+    }
+    
+    @Test
+    public void doesNotCacheFailures() throws Exception {
+        try (StubServer server = new StubServer(ResponseCacheTest::addons)) {
+            ResponseCache cache = ResponseCache.create();
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi()).setCache(cache);
+            assertNull(client.getAddon(404).get());
+            assertNull(client.getAddon(404).get());
+            assertEquals(2, server.getRequests());
+            assertEquals(0, cache.size());
+        }
+    }
+    
+    @Test
+    public void expiresAndEvicts() throws Exception {
+        try (StubServer server = new StubServer(ResponseCacheTest::addons)) {
+            ResponseCache cache = ResponseCache.create().setMaxEntries(2).setTtl(ResponseCache.Endpoint.ADDON, 200, TimeUnit.MILLISECONDS);
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi()).setCache(cache);
+            client.getAddon(1).get();
+            client.getAddon(2).get();
+            client.getAddon(1).get();
+            client.getAddon(3).get();
+            assertEquals(1, cache.getEvictions());
+            assertNull(cache.getIfPresent(ResponseCache.Endpoint.ADDON, 2));
+            Thread.sleep(250);
+            assertNull(cache.getIfPresent(ResponseCache.Endpoint.ADDON, 1));
+        }
+    }
+    
+    @Test
+    public void bulkLookupsOnlyRequestMisses() throws Exception {
+        try (StubServer server = new StubServer(ResponseCacheTest::addons)) {
+            ResponseCache cache = ResponseCache.create();
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi()).setCache(cache);
+            client.getAddon(3).get();
+            assertEquals(3, client.getAddons(1, 2, 3).get().size());
+            assertEquals(2, server.getRequests());
+            assertEquals(3, client.getAddons(3, 2, 1).get().get(0).id);
+            assertEquals(2, server.getRequests());
+        }
+    }
+    
+    @Test
+    public void revalidatesExpiredEntriesConditionally() throws Exception {
+        List<String> validators = Collections.synchronizedList(new ArrayList<>());
+        try (StubServer server = new StubServer(request -> {
+            validators.add(request.ifNoneMatch);
+            return addons(request);
+        })) {
+            ResponseCache cache = ResponseCache.create().setTtl(ResponseCache.Endpoint.ADDON, 1, TimeUnit.MILLISECONDS);
+            CurseMetaClient client = CurseMetaClient.create().setApi(server.getApi()).setCache(cache);
+            CurseMetaAPI.Addon addon = client.getAddon(1).get();
+            Thread.sleep(5);
+            assertSame(addon, client.getAddon(1).get());
+            assertEquals(2, validators.size());
+            assertNull(validators.get(0));
+            assertNotNull(validators.get(1));
+        }
+    }
+}
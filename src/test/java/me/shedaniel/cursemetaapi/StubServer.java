@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2019 Danielshe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.shedaniel.cursemetaapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A local http server for tests, answers every request with the handler and counts the requests.
+ * <p>
+ * Responses carry an ETag and are answered with 304 if it matches If-None-Match, null responses are 404.
+ * Range requests of {@code bytes=<offset>-} are answered with 206 unless If-Range does not match the ETag. Paths under {@code /files/} are jars, every other
+ * response is json.
+ */
+class StubServer implements AutoCloseable {
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    
+    StubServer(Function<Request, String> handler) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            connections.add(exchange.getRemoteAddress());
+            String response = handler.apply(new Request(exchange));
+            if (response == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            String etag = "\"" + Integer.toHexString(response.hashCode()) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Content-Type", exchange.getRequestURI().getPath().startsWith("/files/") ? "application/java-archive" : "application/json; charset=UTF-8");
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            int offset = 0;
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            if (exchange.getRequestHeaders().getFirst("Range") != null && (ifRange == null || ifRange.equals(etag))) {
+                offset = Integer.parseInt(exchange.getRequestHeaders().getFirst("Range").replaceAll("bytes=(\\d+)-", "$1"));
+                if (offset >= bytes.length) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */" + bytes.length);
+                    exchange.sendResponseHeaders(416, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + offset + "-" + (bytes.length - 1) + "/" + bytes.length);
+            }
+            exchange.sendResponseHeaders(offset > 0 ? 206 : 200, bytes.length - offset);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes, offset, bytes.length - offset);
+            }
+        });
+        server.start();
+    }
+    
+    String getApi() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    int getRequests() {
+        return requests.get();
+    }
+    
+    /**
+     * @return the number of connections the requests came from
+     */
+    int getConnections() {
+        return connections.size();
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+    
+    static class Request {
+        final String method;
+        final String path;
+        final String query;
+        final String body;
+        final String range;
+        final String ifNoneMatch;
+        
+        Request(HttpExchange exchange) throws IOException {
+            this.method = exchange.getRequestMethod();
+            this.path = exchange.getRequestURI().getPath();
+            this.query = exchange.getRequestURI().getRawQuery();
+            this.range = exchange.getRequestHeaders().getFirst("Range");
+            this.ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1)
+                    out.write(buffer, 0, read);
+            }
+            this.body = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}